@@ -0,0 +1,238 @@
+package in.mcxiv.args.processor;
+
+import in.mcxiv.args.processor.Schema.Argument;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a parser for every class with fields annotated with the annotations of
+ * {@code in.mcxiv.args.annotations}. For a class {@code Options}, the parser is {@code OptionsParser},
+ * in the same package, and it evaluates arguments like an {@code ArgsEvaler} built with the default
+ * settings and the same arguments would, straight into the fields.
+ * <p>
+ * The annotations are referred to by their names, so this processor doesn't depend on the library.
+ */
+public class ArgsParserProcessor extends AbstractProcessor {
+
+    private static final String PACKAGE = "in.mcxiv.args.annotations.";
+
+    static final String INDEXED = PACKAGE + "Indexed";
+    static final String NAMED = PACKAGE + "Named";
+    static final String TAGGED = PACKAGE + "Tagged";
+    static final String CHAIN = PACKAGE + "Chain";
+    static final String EXPRESSION = PACKAGE + "Expression";
+    static final String VARIADIC = PACKAGE + "Variadic";
+
+    private static final List<String> ANNOTATIONS = Arrays.asList(INDEXED, NAMED, TAGGED, CHAIN, EXPRESSION, VARIADIC);
+
+    private Messager messager;
+    private Conversions conversions;
+    private boolean failed;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(ANNOTATIONS);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        messager = processingEnv.getMessager();
+        conversions = new Conversions(processingEnv.getTypeUtils(), processingEnv.getElementUtils());
+
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations)
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+                if (element.getKind() == ElementKind.FIELD)
+                    types.add((TypeElement) element.getEnclosingElement());
+
+        for (TypeElement type : types) {
+            failed = false;
+            Schema schema = schemaOf(type);
+            if (failed) continue;
+
+            try {
+                JavaFileObject file = processingEnv.getFiler().createSourceFile(ParserWriter.qualifiedName(schema), type);
+                try (Writer writer = file.openWriter()) {
+                    writer.write(new ParserWriter(schema, conversions).write());
+                }
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Could not write the parser: " + e.getMessage(), type);
+            }
+        }
+
+        return true;
+    }
+
+    private Schema schemaOf(TypeElement type) {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC))
+            error(type, "A class with annotated fields must be a top level or a static nested class.");
+        if (type.getModifiers().contains(Modifier.PRIVATE))
+            error(type, "A class with annotated fields can't be private.");
+
+        boolean hasNoArgsConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                hasNoArgsConstructor = true;
+
+        Schema schema = new Schema(type, hasNoArgsConstructor);
+        Set<String> names = new HashSet<>();
+        Set<String> tags = new HashSet<>();
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            List<AnnotationMirror> mirrors = new ArrayList<>();
+            for (AnnotationMirror mirror : field.getAnnotationMirrors())
+                if (ANNOTATIONS.contains(nameOf(mirror))) mirrors.add(mirror);
+            if (mirrors.isEmpty()) continue;
+
+            if (mirrors.size() > 1) {
+                error(field, "A field can hold only one kind of argument.");
+                continue;
+            }
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+                error(field, "An annotated field can't be private, final or static.");
+                continue;
+            }
+
+            AnnotationMirror mirror = mirrors.get(0);
+            TypeMirror fieldType = field.asType();
+
+            switch (nameOf(mirror)) {
+                case INDEXED:
+                    requireConvertible(field);
+                    schema.indexed.add(new Argument(field, field.getSimpleName().toString(), null, null));
+                    break;
+
+                case NAMED: {
+                    String name = values(mirror).get(0);
+                    if (name.isEmpty()) name = field.getSimpleName().toString();
+                    requireConvertible(field);
+                    if (!names.add(name)) error(field, "The name " + name + " is used by another named argument.");
+                    schema.named.add(new Argument(field, name, null, null));
+                    break;
+                }
+
+                case TAGGED: {
+                    String tag = values(mirror).get(0);
+                    requireConvertible(field);
+                    if (!tags.add(tag)) error(field, "The tag " + tag + " is used by another tagged argument.");
+                    schema.tagged.add(new Argument(field, tag, null, null));
+                    break;
+                }
+
+                case CHAIN: {
+                    List<String> words = values(mirror);
+                    if (words.isEmpty()) error(field, "A chain needs at least one word.");
+                    if (!isStringArray(fieldType) && fieldType.getKind() != TypeKind.BOOLEAN)
+                        error(field, "A chain field must be a String[] or a boolean.");
+                    schema.chains.add(new Argument(field, null, words.toArray(new String[0]), null));
+                    break;
+                }
+
+                case EXPRESSION: {
+                    List<Schema.Element> elements = new ArrayList<>();
+                    for (String text : values(mirror)) elements.add(elementOf(field, text));
+                    if (elements.isEmpty()) error(field, "An expression needs at least one element.");
+                    if (!isArrayOf(fieldType, "java.lang.Object"))
+                        error(field, "An expression field must be an Object[].");
+                    schema.expressions.add(new Argument(field, null, null, elements));
+                    break;
+                }
+
+                case VARIADIC:
+                    if (!isStringArray(fieldType)) error(field, "A variadic field must be a String[].");
+                    if (schema.variadic != null) error(field, "Only one field can hold the variadic arguments.");
+                    schema.variadic = new Argument(field, null, null, null);
+                    break;
+            }
+        }
+
+        return schema;
+    }
+
+    private Schema.Element elementOf(VariableElement field, String text) {
+        if (text.length() > 2 && text.startsWith("{") && text.endsWith("}")) {
+            TypeMirror type = conversions.typeNamed(text.substring(1, text.length() - 1));
+            if (type == null || conversions.convert(type, "s") == null)
+                error(field, "The type of the element " + text + " is not supported.");
+            return new Schema.Element(Schema.Element.Kind.CLASS, text, type);
+        }
+        if (text.length() > 2 && text.startsWith("/") && text.endsWith("/"))
+            return new Schema.Element(Schema.Element.Kind.PATTERN, text.substring(1, text.length() - 1), null);
+        return new Schema.Element(Schema.Element.Kind.LITERAL, text, null);
+    }
+
+    private void requireConvertible(VariableElement field) {
+        if (conversions.convert(field.asType(), "s") == null)
+            error(field, "The type " + field.asType() + " is not supported.");
+    }
+
+    private static boolean isStringArray(TypeMirror type) {
+        return isArrayOf(type, "java.lang.String");
+    }
+
+    private static boolean isArrayOf(TypeMirror type, String component) {
+        return type.getKind() == TypeKind.ARRAY && ((ArrayType) type).getComponentType().toString().equals(component);
+    }
+
+    private static String nameOf(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    /**
+     * @return The String or String[] value of the annotation, as a list.
+     */
+    private List<String> values(AnnotationMirror mirror) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (!entry.getKey().getSimpleName().contentEquals("value")) continue;
+
+            Object value = entry.getValue().getValue();
+            if (value instanceof String) return Collections.singletonList((String) value);
+
+            List<String> strings = new ArrayList<>();
+            for (Object element : (List<?>) value)
+                strings.add((String) ((AnnotationValue) element).getValue());
+            return strings;
+        }
+        return Collections.emptyList();
+    }
+
+    private void error(Element element, String message) {
+        failed = true;
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
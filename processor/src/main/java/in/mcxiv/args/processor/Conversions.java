@@ -0,0 +1,111 @@
+package in.mcxiv.args.processor;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The code which turns a String into a value of a given type, the compile time counterpart
+ * of the default object resolvers. Primitives are parsed directly, without boxing.
+ */
+final class Conversions {
+
+    private final Types types;
+    private final Elements elements;
+
+    Conversions(Types types, Elements elements) {
+        this.types = types;
+        this.elements = elements;
+    }
+
+    /**
+     * @param type   The type to convert to.
+     * @param string An expression of type String.
+     * @return An expression of the given type, or null if the type isn't supported.
+     */
+    String convert(TypeMirror type, String string) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "java.lang.Boolean.parseBoolean(" + string + ")";
+            case BYTE:
+                return "java.lang.Byte.parseByte(" + string + ")";
+            case SHORT:
+                return "java.lang.Short.parseShort(" + string + ")";
+            case INT:
+                return "java.lang.Integer.parseInt(" + string + ")";
+            case LONG:
+                return "java.lang.Long.parseLong(" + string + ")";
+            case FLOAT:
+                return "java.lang.Float.parseFloat(" + string + ")";
+            case DOUBLE:
+                return "java.lang.Double.parseDouble(" + string + ")";
+            case CHAR:
+                return string + ".charAt(0)";
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+
+        switch (name) {
+            case "java.lang.String":
+            case "java.lang.Object":
+            case "java.lang.CharSequence":
+                return string;
+            case "java.lang.Boolean":
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Float":
+            case "java.lang.Double":
+                return name + ".valueOf(" + convert(types.unboxedType(type), string) + ")";
+            case "java.lang.Character":
+                return "java.lang.Character.valueOf(" + string + ".charAt(0))";
+            case "java.math.BigInteger":
+            case "java.math.BigDecimal":
+            case "java.io.File":
+                return "new " + name + "(" + string + ")";
+            case "java.util.regex.Pattern":
+                return "java.util.regex.Pattern.compile(" + string + ")";
+        }
+
+        if (element.getKind() == ElementKind.ENUM)
+            return name + ".valueOf(" + string + ")";
+
+        return null;
+    }
+
+    /**
+     * Finds the type named in a class element of an expression: a primitive type, a class of
+     * {@code java.lang} or a fully qualified class name.
+     *
+     * @return The type, or null if there's no such type.
+     */
+    TypeMirror typeNamed(String name) {
+        for (TypeKind kind : TypeKind.values())
+            if (kind.isPrimitive() && kind.name().toLowerCase().equals(name))
+                return types.getPrimitiveType(kind);
+
+        Element element = elements.getTypeElement(name);
+        if (element == null) element = elements.getTypeElement("java.lang." + name);
+        return element == null ? null : element.asType();
+    }
+
+    /**
+     * @return The type as it's written in source code.
+     */
+    String sourceName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED)
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        return type.toString();
+    }
+}
@@ -0,0 +1,405 @@
+package in.mcxiv.args.processor;
+
+import in.mcxiv.args.processor.Schema.Argument;
+import in.mcxiv.args.processor.Schema.Element;
+
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the source code of the parser of a {@link Schema}.
+ * <p>
+ * The parser runs the phases of an {@code ArgsEvaler} in the default order: expressions, chains,
+ * tagged, named, indexed and variadic arguments, with mixing allowed. Every phase is a loop over
+ * the arguments not yet consumed, dispatching on the argument with a switch, and stepping back
+ * after the expressions and chains like the evaluator does. The values are converted with direct
+ * calls like {@code Integer.parseInt} and assigned to the fields.
+ */
+final class ParserWriter {
+
+    private final Schema schema;
+    private final Conversions conversions;
+    private final StringBuilder out = new StringBuilder();
+    private final String target;
+
+    /**
+     * If a match of more than one argument was written, which steps back after it.
+     */
+    private boolean stepsBack;
+
+    ParserWriter(Schema schema, Conversions conversions) {
+        this.schema = schema;
+        this.conversions = conversions;
+        this.target = schema.type.getQualifiedName().toString();
+    }
+
+    static String qualifiedName(Schema schema) {
+        String packageName = packageOf(schema.type).getQualifiedName().toString();
+        return packageName.isEmpty() ? simpleName(schema) : packageName + "." + simpleName(schema);
+    }
+
+    private static String simpleName(Schema schema) {
+        StringBuilder name = new StringBuilder(schema.type.getSimpleName());
+        for (javax.lang.model.element.Element e = schema.type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement())
+            name.insert(0, e.getSimpleName() + "_");
+        return name.append("Parser").toString();
+    }
+
+    private static PackageElement packageOf(javax.lang.model.element.Element element) {
+        while (!(element instanceof PackageElement)) element = element.getEnclosingElement();
+        return (PackageElement) element;
+    }
+
+    String write() {
+        String packageName = packageOf(schema.type).getQualifiedName().toString();
+        if (!packageName.isEmpty()) line("package " + packageName + ";").line("");
+
+        line("/**");
+        line(" * Parses arguments into a {@link " + target + "}, like an {@code ArgsEvaler} with its arguments would.");
+        line(" * Generated by " + ArgsParserProcessor.class.getName() + " from the annotated fields, don't edit it.");
+        line(" */");
+        line("public final class " + simpleName(schema) + " {");
+        line("");
+
+        boolean hasPatterns = false;
+        for (int id = 0; id < schema.expressions.size(); id++) {
+            List<Element> elements = schema.expressions.get(id).elements;
+            for (int e = 0; e < elements.size(); e++)
+                if (elements.get(e).kind == Element.Kind.PATTERN) {
+                    line("    private static final java.util.regex.Pattern " + patternName(id, e)
+                         + " = java.util.regex.Pattern.compile(" + literal(elements.get(e).text) + ");");
+                    hasPatterns = true;
+                }
+        }
+        if (hasPatterns) line("");
+
+        line("    private " + simpleName(schema) + "() {");
+        line("    }");
+        line("");
+
+        if (schema.hasNoArgsConstructor) {
+            line("    public static " + target + " parse(java.lang.String[] args) {");
+            line("        return parse(args, new " + target + "());");
+            line("    }");
+            line("");
+        }
+
+        line("    /**");
+        line("     * Evaluates the arguments into the fields of the target, the fields of arguments which weren't found are left as they are.");
+        line("     *");
+        line("     * @return the target");
+        line("     */");
+        line("    public static " + target + " parse(java.lang.String[] args, " + target + " target) {");
+        line("        boolean[] consumed = new boolean[args.length];");
+        if (!schema.expressions.isEmpty()) line("        expressions(args, consumed, target);");
+        if (!schema.chains.isEmpty()) line("        chains(args, consumed, target);");
+        if (!schema.tagged.isEmpty()) line("        tagged(args, consumed, target);");
+        if (!schema.named.isEmpty()) line("        named(args, consumed, target);");
+        if (!schema.indexed.isEmpty()) line("        indexed(args, consumed, target);");
+        if (schema.variadic != null) line("        variadic(args, consumed, target);");
+        line("        return target;");
+        line("    }");
+
+        if (!schema.expressions.isEmpty()) writeExpressions();
+        if (!schema.chains.isEmpty()) writeChains();
+        if (!schema.tagged.isEmpty()) writeTagged();
+        if (!schema.named.isEmpty()) writeNamed();
+        if (!schema.indexed.isEmpty()) writeIndexed();
+        if (schema.variadic != null) writeVariadic();
+
+        line("");
+        line("    /**");
+        line("     * @return The index of the first argument at or after i which isn't consumed, or the number of arguments.");
+        line("     */");
+        line("    private static int next(boolean[] consumed, int i) {");
+        line("        while (i < consumed.length && consumed[i]) i++;");
+        line("        return i;");
+        line("    }");
+        if (stepsBack) {
+            line("");
+            line("    /**");
+            line("     * @return The index of the argument count arguments not consumed before i, or of the first one not consumed.");
+            line("     */");
+            line("    private static int back(boolean[] consumed, int i, int count) {");
+            line("        while (count > 0 && i > 0)");
+            line("            if (!consumed[--i]) count--;");
+            line("        return next(consumed, i);");
+            line("    }");
+        }
+        line("}");
+
+        return out.toString();
+    }
+
+    private void writeExpressions() {
+        List<String> leading = new ArrayList<>();
+        List<String> unindexed = new ArrayList<>();
+        Map<String, List<String>> byLeadingLiteral = new LinkedHashMap<>();
+
+        for (int id = 0; id < schema.expressions.size(); id++) {
+            String literal = schema.expressions.get(id).leadingLiteral();
+            if (literal != null && !byLeadingLiteral.containsKey(literal)) {
+                leading.add(literal);
+                byLeadingLiteral.put(literal, new ArrayList<>());
+            }
+        }
+        // Every bucket tries its own expressions and the unindexed ones, in the order they were declared.
+        for (int id = 0; id < schema.expressions.size(); id++) {
+            String literal = schema.expressions.get(id).leadingLiteral();
+            String call = attempt("expression" + id, schema.expressions.get(id).elements.size());
+            if (literal != null) byLeadingLiteral.get(literal).add(call);
+            else {
+                unindexed.add(call);
+                for (List<String> calls : byLeadingLiteral.values()) calls.add(call);
+            }
+        }
+
+        phaseStart("expressions");
+        if (leading.isEmpty()) {
+            for (String call : unindexed) line("            " + call);
+        } else {
+            line("            switch (args[i]) {");
+            for (String literal : leading) {
+                line("                case " + literal(literal) + ":");
+                for (String call : byLeadingLiteral.get(literal)) line("                    " + call);
+                line("                    break;");
+            }
+            if (!unindexed.isEmpty()) {
+                line("                default:");
+                for (String call : unindexed) line("                    " + call);
+            }
+            line("            }");
+        }
+        phaseEnd();
+
+        for (int id = 0; id < schema.expressions.size(); id++) {
+            Argument argument = schema.expressions.get(id);
+            List<Element> elements = argument.elements;
+
+            methodStart("expression" + id, argument);
+            positions(elements.size());
+            for (int e = 0; e < elements.size(); e++)
+                if (elements.get(e).kind == Element.Kind.LITERAL)
+                    line("        if (!" + literal(elements.get(e).text) + ".equals(args[p" + e + "])) return false;");
+            for (int e = 0; e < elements.size(); e++)
+                if (elements.get(e).kind == Element.Kind.PATTERN) {
+                    line("        java.util.regex.Matcher m" + e + " = " + patternName(id, e) + ".matcher(args[p" + e + "]);");
+                    line("        if (!m" + e + ".matches()) return false;");
+                }
+
+            List<String> values = new ArrayList<>();
+            for (int e = 0; e < elements.size(); e++) {
+                Element element = elements.get(e);
+                switch (element.kind) {
+                    case LITERAL:
+                        values.add(literal(element.text));
+                        break;
+                    case CLASS:
+                        values.add(conversions.convert(element.type, "args[p" + e + "]"));
+                        break;
+                    case PATTERN:
+                        values.add("m" + e + ".groupCount() >= 1 ? m" + e + ".group(1) : m" + e + ".group()");
+                        break;
+                }
+            }
+            line("        target." + argument.fieldName() + " = new java.lang.Object[]{");
+            for (int v = 0; v < values.size(); v++)
+                line("                " + values.get(v) + (v + 1 < values.size() ? "," : ""));
+            line("        };");
+            consume(elements.size());
+            methodEnd();
+        }
+    }
+
+    private void writeChains() {
+        Map<String, List<String>> byFirstWord = new LinkedHashMap<>();
+        for (int id = 0; id < schema.chains.size(); id++)
+            byFirstWord.computeIfAbsent(schema.chains.get(id).words[0], w -> new ArrayList<>())
+                    .add(attempt("chain" + id, schema.chains.get(id).words.length));
+
+        // Trying the chains in the order they were declared, the first one to match wins.
+        phaseStart("chains");
+        line("            switch (args[i]) {");
+        byFirstWord.forEach((word, calls) -> {
+            line("                case " + literal(word) + ":");
+            for (String call : calls) line("                    " + call);
+            line("                    break;");
+        });
+        line("            }");
+        phaseEnd();
+
+        for (int id = 0; id < schema.chains.size(); id++) {
+            Argument argument = schema.chains.get(id);
+            String[] words = argument.words;
+
+            methodStart("chain" + id, argument);
+            positions(words.length);
+            for (int w = 1; w < words.length; w++)
+                line("        if (!" + literal(words[w]) + ".equals(args[p" + w + "])) return false;");
+
+            if (argument.type().getKind() == TypeKind.BOOLEAN)
+                line("        target." + argument.fieldName() + " = true;");
+            else {
+                List<String> literals = new ArrayList<>();
+                for (String word : words) literals.add(literal(word));
+                line("        target." + argument.fieldName() + " = new java.lang.String[]{" + String.join(", ", literals) + "};");
+            }
+            consume(words.length);
+            methodEnd();
+        }
+    }
+
+    private void writeTagged() {
+        phaseStart("tagged");
+        line("            switch (args[i]) {");
+        for (Argument argument : schema.tagged) {
+            line("                case " + literal(argument.name) + ": {");
+            line("                    int v = next(consumed, i + 1);");
+            line("                    if (v == args.length)");
+            line("                        throw new java.lang.IllegalArgumentException(" + literal("No value was provided for the tag " + argument.name + ".") + ");");
+            line("                    target." + argument.fieldName() + " = " + conversions.convert(argument.type(), "args[v]") + ";");
+            line("                    consumed[i] = consumed[v] = true;");
+            line("                    break;");
+            line("                }");
+        }
+        line("            }");
+        phaseEnd();
+    }
+
+    private void writeNamed() {
+        phaseStart("named");
+        line("            int equator = args[i].indexOf('=');");
+        line("            if (equator < 0) continue;");
+        line("            switch (args[i].substring(0, equator)) {");
+        for (Argument argument : schema.named) {
+            line("                case " + literal(argument.name) + ":");
+            line("                    target." + argument.fieldName() + " = " + conversions.convert(argument.type(), "args[i].substring(equator + 1)") + ";");
+            line("                    consumed[i] = true;");
+            line("                    break;");
+        }
+        line("            }");
+        phaseEnd();
+    }
+
+    private void writeIndexed() {
+        line("");
+        line("    private static void indexed(java.lang.String[] args, boolean[] consumed, " + target + " target) {");
+        line("        int i = next(consumed, 0);");
+        for (int idx = 0; idx < schema.indexed.size(); idx++) {
+            Argument argument = schema.indexed.get(idx);
+            if (idx > 0) line("        i = next(consumed, i + 1);");
+            line("        if (i == args.length) return;");
+            line("        target." + argument.fieldName() + " = " + conversions.convert(argument.type(), "args[i]") + ";");
+            line("        consumed[i] = true;");
+        }
+        line("    }");
+    }
+
+    private void writeVariadic() {
+        line("");
+        line("    private static void variadic(java.lang.String[] args, boolean[] consumed, " + target + " target) {");
+        line("        int count = 0;");
+        line("        for (int i = next(consumed, 0); i < args.length; i = next(consumed, i + 1)) count++;");
+        line("        if (count == 0) return;");
+        line("        java.lang.String[] remaining = new java.lang.String[count];");
+        line("        for (int i = next(consumed, 0), j = 0; i < args.length; i = next(consumed, i + 1)) remaining[j++] = args[i];");
+        line("        target." + schema.variadic.fieldName() + " = remaining;");
+        line("    }");
+    }
+
+    /**
+     * @return The statement matching the method at i. After a match of more than one argument, the
+     * phase resumes count - 1 arguments not consumed before it, like the evaluator, so that the
+     * arguments on both sides of it, which are adjacent now, can match too.
+     */
+    private String attempt(String method, int count) {
+        String call = method + "(args, consumed, i, target)";
+        if (count == 1) return "if (" + call + ") continue;";
+        stepsBack = true;
+        return "if (" + call + ") { i = back(consumed, i, " + (count - 1) + ") - 1; continue; }";
+    }
+
+    private void phaseStart(String name) {
+        line("");
+        line("    private static void " + name + "(java.lang.String[] args, boolean[] consumed, " + target + " target) {");
+        line("        for (int i = next(consumed, 0); i < args.length; i = next(consumed, i + 1)) {");
+    }
+
+    private void phaseEnd() {
+        line("        }");
+        line("    }");
+    }
+
+    private void methodStart(String name, Argument argument) {
+        line("");
+        line("    /**");
+        line("     * Matches {@link " + target + "#" + argument.fieldName() + "} at i.");
+        line("     */");
+        line("    private static boolean " + name + "(java.lang.String[] args, boolean[] consumed, int i, " + target + " target) {");
+    }
+
+    private void methodEnd() {
+        line("        return true;");
+        line("    }");
+    }
+
+    /**
+     * Finds the positions of the arguments which would be matched by the elements, p0 to p(count - 1).
+     */
+    private void positions(int count) {
+        line("        int p0 = i;");
+        for (int p = 1; p < count; p++) {
+            line("        int p" + p + " = next(consumed, p" + (p - 1) + " + 1);");
+            line("        if (p" + p + " == args.length) return false;");
+        }
+    }
+
+    private void consume(int count) {
+        for (int p = 0; p < count; p++)
+            line("        consumed[p" + p + "] = true;");
+    }
+
+    private static String patternName(int id, int element) {
+        return "PATTERN_" + id + "_" + element;
+    }
+
+    private ParserWriter line(String line) {
+        out.append(line).append('\n');
+        return this;
+    }
+
+    /**
+     * @return The string as a Java string literal.
+     */
+    static String literal(String string) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : string.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7E) literal.append(String.format("\\u%04x", (int) c));
+                    else literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
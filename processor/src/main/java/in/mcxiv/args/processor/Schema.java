@@ -0,0 +1,100 @@
+package in.mcxiv.args.processor;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The arguments declared by the annotated fields of a class, in the order of the fields.
+ */
+final class Schema {
+
+    final TypeElement type;
+    final boolean hasNoArgsConstructor;
+
+    final List<Argument> indexed = new ArrayList<>();
+    final List<Argument> named = new ArrayList<>();
+    final List<Argument> tagged = new ArrayList<>();
+    final List<Argument> chains = new ArrayList<>();
+    final List<Argument> expressions = new ArrayList<>();
+    Argument variadic;
+
+    Schema(TypeElement type, boolean hasNoArgsConstructor) {
+        this.type = type;
+        this.hasNoArgsConstructor = hasNoArgsConstructor;
+    }
+
+    /**
+     * An annotated field.
+     */
+    static final class Argument {
+
+        final VariableElement field;
+
+        /**
+         * The name of a named argument, the tag of a tagged one.
+         */
+        final String name;
+
+        /**
+         * The words of a chain.
+         */
+        final String[] words;
+
+        /**
+         * The elements of an expression.
+         */
+        final List<Element> elements;
+
+        Argument(VariableElement field, String name, String[] words, List<Element> elements) {
+            this.field = field;
+            this.name = name;
+            this.words = words;
+            this.elements = elements;
+        }
+
+        String fieldName() {
+            return field.getSimpleName().toString();
+        }
+
+        TypeMirror type() {
+            return field.asType();
+        }
+
+        /**
+         * @return The first element of the expression if it's a literal, else null.
+         */
+        String leadingLiteral() {
+            Element first = elements.get(0);
+            return first.kind == Element.Kind.LITERAL ? first.text : null;
+        }
+    }
+
+    /**
+     * An element of an expression.
+     */
+    static final class Element {
+
+        enum Kind {LITERAL, CLASS, PATTERN}
+
+        final Kind kind;
+
+        /**
+         * The literal, or the regex of a pattern.
+         */
+        final String text;
+
+        /**
+         * The type of a class element.
+         */
+        final TypeMirror type;
+
+        Element(Kind kind, String text, TypeMirror type) {
+            this.kind = kind;
+            this.text = text;
+            this.type = type;
+        }
+    }
+}
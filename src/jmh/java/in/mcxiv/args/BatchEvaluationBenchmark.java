@@ -0,0 +1,77 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ResultMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static in.mcxiv.args.ArgsEvaler.pattern;
+
+/**
+ * Measures how the throughput of {@link ArgsEvaler#evaluateAll(List, java.util.concurrent.Executor)}
+ * scales with the number of threads, against evaluating the same batch one call at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchEvaluationBenchmark {
+
+    private static final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+            .addExpression("command", Pattern.compile("create|delete|edit"), pattern("<!(\\d{10})>", long.class), int.class)
+            .addChain("remote", "git", "remote", "add")
+            .addTagged("--client", boolean.class)
+            .addTagged("-o")
+            .addNamed("level", int.class)
+            .addIndexed("input")
+            .setHasVariadicEnding(true)
+            .build();
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private final List<String[]> batch = new ArrayList<>();
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < 20_000; i++)
+            batch.add(("git remote add --client true edit <!12345" + (67890 + i % 1000) + "> " + i
+                    + " -o out" + i + ".db level=" + i % 10 + " input.db extra " + i).split(" "));
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (String[] args : batch) blackhole.consume(evaluator.evaluate(args));
+    }
+
+    @Benchmark
+    public List<ResultMap> evaluateAll() {
+        return evaluator.evaluateAll(batch, pool);
+    }
+}
@@ -0,0 +1,63 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ResultMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ArgsEvaler#evaluate(String[])} and {@link ArgsEvaler#evaluate(String[], ResultMap)}
+ * for every kind of argument, across schema sizes and input lengths.
+ * <p>
+ * Throughput is reported along with the latency percentiles of the sampled calls, run it with
+ * {@code gradle jmh} to get the allocation rate from the GC profiler as well. The whole matrix
+ * takes long, pick a part of it with for example {@code gradle jmh -Pjmh="-p workload=NAMED -p schemaSize=100"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({"INDEXED", "NAMED", "TAGGED", "CHAINED", "EXPRESSION", "VARIADIC"})
+    public Workload workload;
+
+    @Param({"1", "100", "10000"})
+    public int schemaSize;
+
+    @Param({"1", "1000", "100000"})
+    public int inputLength;
+
+    private ArgsEvaler evaluator;
+    private String[] args;
+    private ResultMap map;
+
+    @Setup
+    public void setUp() {
+        evaluator = workload.evaluator(schemaSize);
+        args = workload.input(schemaSize, inputLength);
+        map = evaluator.evaluate(args);
+    }
+
+    @Benchmark
+    public ResultMap evaluate() {
+        return evaluator.evaluate(args);
+    }
+
+    @Benchmark
+    public ResultMap evaluateReusingMap() {
+        return evaluator.evaluate(args, map);
+    }
+}
@@ -0,0 +1,60 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ResultMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares an evaluator without an {@link EvaluationListener}, which should cost nothing more than
+ * before listeners existed, against one with a listener which does nothing and one with {@link EvaluationStats}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+
+    @Param({"none", "noop", "stats"})
+    public String listener;
+
+    private ArgsEvaler evaluator;
+    private String[] args;
+    private ResultMap map;
+
+    @Setup
+    public void setUp() {
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("range", "from", int.class, "to", int.class)
+                .addChain("remote", "git", "remote", "add")
+                .addTagged("-o")
+                .addNamed("level", int.class)
+                .addIndexed("input")
+                .setHasVariadicEnding(true);
+
+        if (listener.equals("noop")) builder.setEvaluationListener(new EvaluationListener() {
+        });
+        else if (listener.equals("stats")) builder.setEvaluationListener(new EvaluationStats());
+
+        evaluator = builder.build();
+        args = "git remote add from 1 to 10 -o out.db level=3 input.db extra".split(" ");
+        map = evaluator.evaluate(args);
+    }
+
+    @Benchmark
+    public ResultMap evaluate() {
+        return evaluator.evaluate(args, map);
+    }
+}
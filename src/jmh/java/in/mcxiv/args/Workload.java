@@ -0,0 +1,120 @@
+package in.mcxiv.args;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The kinds of arguments measured by the benchmarks. Each one builds an evaluator with a given
+ * number of arguments of its kind, and an input of a given number of tokens which matches them.
+ * Inputs are made of whole units (a tag and its value, a chain, an expression), so an input
+ * may be a token longer than asked for.
+ */
+public enum Workload {
+
+    INDEXED {
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addIndexed("i" + k);
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("v" + j);
+        }
+    },
+
+    NAMED {
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addNamed("n" + k);
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("n" + k + "=v" + j);
+        }
+    },
+
+    TAGGED {
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addTagged("-t" + k);
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("-t" + k);
+            tokens.add("v" + j);
+        }
+    },
+
+    CHAINED {
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addChain("c" + k, "c" + k, "on");
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("c" + k);
+            tokens.add("on");
+        }
+    },
+
+    EXPRESSION {
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addExpression("e" + k, "e" + k, int.class);
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("e" + k);
+            tokens.add(String.valueOf(j));
+        }
+    },
+
+    VARIADIC {
+        @Override
+        void configure(ArgsEvaler.ArgsEvalerBuilder builder) {
+            builder.setHasVariadicEnding(true);
+        }
+
+        @Override
+        void register(ArgsEvaler.ArgsEvalerBuilder builder, int k) {
+            builder.addIndexed("i" + k);
+        }
+
+        @Override
+        void unit(List<String> tokens, int k, int j) {
+            tokens.add("v" + j);
+        }
+    };
+
+    void configure(ArgsEvaler.ArgsEvalerBuilder builder) {
+    }
+
+    /**
+     * Registers the k-th argument of this kind.
+     */
+    abstract void register(ArgsEvaler.ArgsEvalerBuilder builder, int k);
+
+    /**
+     * Adds the j-th unit of the input, matching the k-th argument.
+     */
+    abstract void unit(List<String> tokens, int k, int j);
+
+    public ArgsEvaler evaluator(int schemaSize) {
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder();
+        configure(builder);
+        for (int k = 0; k < schemaSize; k++) register(builder, k);
+        return builder.build();
+    }
+
+    public String[] input(int schemaSize, int length) {
+        List<String> tokens = new ArrayList<>(length + 1);
+        for (int j = 0; tokens.size() < length; j++)
+            unit(tokens, j % schemaSize, j);
+        return tokens.toArray(new String[0]);
+    }
+}
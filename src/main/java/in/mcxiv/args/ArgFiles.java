@@ -0,0 +1,236 @@
+package in.mcxiv.args;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expands the arguments which name an argument file, like {@code @options.txt}, into the
+ * arguments written in it, split the way javac splits its argument files.
+ * <ul>
+ *     <li>Arguments are separated by whitespace and line breaks.</li>
+ *     <li>A {@code #} where an argument would start comments out the rest of the line.</li>
+ *     <li>Single or double quotes keep whitespace within an argument, and are removed.
+ *     A line break ends the argument even within quotes.</li>
+ *     <li>Within quotes, {@code \n}, {@code \r}, {@code \t} and {@code \f} are escapes, a backslash
+ *     at the end of a line continues the argument after the leading whitespace of the next one,
+ *     and a backslash before any other character is removed.</li>
+ * </ul>
+ * Argument files may name others, relative to the working directory like the ones given to
+ * javac, but not themselves through any number of others. An argument which starts with the
+ * prefix twice is kept, with one prefix removed.
+ * <p>
+ * A file is decoded as UTF-8 a chunk at a time, and its arguments are written straight into a
+ * {@link TokenBuffer}, so it's never copied to the heap as a whole. The files at least as large
+ * as the threshold are decoded from a memory mapping of them.
+ */
+final class ArgFiles {
+
+    private static final int CHUNK = 8192;
+
+    private final String prefix;
+    private final long mappingThreshold;
+
+    ArgFiles(String prefix, long mappingThreshold) {
+        this.prefix = prefix;
+        this.mappingThreshold = mappingThreshold;
+    }
+
+    /**
+     * @return If any of the arguments from the index starts with the prefix, so they have to be expanded.
+     */
+    boolean occursIn(String[] args, int from) {
+        for (int idx = from; idx < args.length; idx++)
+            if (args[idx].startsWith(prefix)) return true;
+        return false;
+    }
+
+    /**
+     * @param from The index of the first argument expanded, the ones before it are left out.
+     * @return The arguments with the argument files replaced by their arguments.
+     * @throws IllegalArgumentException If an argument file can't be read, or names itself.
+     */
+    TokenBuffer expand(String[] args, int from) {
+        TokenBuffer buffer = new TokenBuffer((args.length - from) * 2, 256);
+        List<Path> including = new ArrayList<>();
+        for (int idx = from; idx < args.length; idx++) add(args[idx], buffer, including);
+        return buffer;
+    }
+
+    private void add(String arg, TokenBuffer buffer, List<Path> including) {
+        if (!arg.startsWith(prefix)) buffer.add(arg);
+        else if (arg.startsWith(prefix, prefix.length())) buffer.add(arg, prefix.length(), arg.length());
+        else read(Paths.get(arg.substring(prefix.length())), buffer, including);
+    }
+
+    /**
+     * @param including The files being read, the last one names this one.
+     */
+    private void read(Path path, TokenBuffer buffer, List<Path> including) {
+        Path file;
+        try {
+            file = path.toRealPath();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The argument file " + path + " can't be read.", e);
+        }
+        if (including.contains(file))
+            throw new IllegalArgumentException("The argument file " + path + " names itself, through " + including + ".");
+
+        including.add(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The argument file " + path + " is larger than 2 GB.");
+            new Splitter(buffer, including).split(size >= mappingThreshold
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    : readFully(channel, (int) size));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The argument file " + path + " can't be read.", e);
+        } finally {
+            including.remove(including.size() - 1);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) ;
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Splits the characters of a file into arguments as they're decoded.
+     */
+    private final class Splitter {
+
+        private static final int WHITESPACE = 0;
+        private static final int COMMENT = 1;
+        private static final int ARGUMENT = 2;
+        private static final int ESCAPE = 3;
+        private static final int CONTINUATION = 4;
+
+        private final TokenBuffer buffer;
+        private final List<Path> including;
+
+        private int state = WHITESPACE;
+
+        /**
+         * The quote the argument is within, or 0.
+         */
+        private char quote;
+
+        private Splitter(TokenBuffer buffer, List<Path> including) {
+            this.buffer = buffer;
+            this.including = including;
+        }
+
+        private void split(ByteBuffer bytes) throws IOException {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            CharBuffer chars = CharBuffer.allocate(CHUNK);
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, true);
+                if (result.isError()) result.throwException();
+                accept(chars);
+            } while (result.isOverflow());
+            while (decoder.flush(chars).isOverflow()) accept(chars);
+            accept(chars);
+
+            if (state != WHITESPACE && state != COMMENT) end();
+        }
+
+        private void accept(CharBuffer chars) {
+            chars.flip();
+            while (chars.hasRemaining()) accept(chars.get());
+            chars.clear();
+        }
+
+        private void accept(char c) {
+            switch (state) {
+                case COMMENT:
+                    if (c == '\n' || c == '\r') state = WHITESPACE;
+                    return;
+                case WHITESPACE:
+                    if (c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r') return;
+                    if (c == '#') {
+                        state = COMMENT;
+                        return;
+                    }
+                    state = ARGUMENT;
+                    quote = 0;
+                    break;
+                case ESCAPE:
+                    state = ARGUMENT;
+                    switch (c) {
+                        case '\n':
+                        case '\r':
+                            state = CONTINUATION;
+                            return;
+                        case 'n':
+                            c = '\n';
+                            break;
+                        case 'r':
+                            c = '\r';
+                            break;
+                        case 't':
+                            c = '\t';
+                            break;
+                        case 'f':
+                            c = '\f';
+                            break;
+                    }
+                    buffer.append(c);
+                    return;
+                case CONTINUATION:
+                    if (c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r') return;
+                    state = ARGUMENT;
+                    break;
+            }
+
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\f':
+                    if (quote == 0) end();
+                    else buffer.append(c);
+                    return;
+                case '\n':
+                case '\r':
+                    end();
+                    return;
+                case '\'':
+                case '"':
+                    if (quote == 0) quote = c;
+                    else if (quote == c) quote = 0;
+                    else buffer.append(c);
+                    return;
+                case '\\':
+                    if (quote != 0) state = ESCAPE;
+                    else buffer.append(c);
+                    return;
+                default:
+                    buffer.append(c);
+            }
+        }
+
+        private void end() {
+            state = WHITESPACE;
+            buffer.split();
+
+            int last = buffer.size() - 1;
+            if (!buffer.startsWith(last, prefix)) return;
+            String arg = buffer.string(last);
+            buffer.removeLast();
+            add(arg, buffer, including);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.annotations.Chain;
+import in.mcxiv.args.annotations.Expression;
+import in.mcxiv.args.annotations.Indexed;
+import in.mcxiv.args.annotations.Named;
+import in.mcxiv.args.annotations.Tagged;
+import in.mcxiv.args.annotations.Variadic;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates arguments straight into objects of a class, rather than into a {@link ArgsEvaler.ResultMap}.
+ * Created by {@link ArgsEvaler#bind(Class)}.
+ * <p>
+ * A field holds the argument named by its {@link Named} or {@link Tagged} annotation, or else the
+ * argument with the same name as the field. A {@link Variadic} field holds the Variadic Arguments.
+ * Fields without any of the argument annotations are left alone if there's no argument of their name.
+ * <p>
+ * If the class has a constructor without parameters, an object is created first and its fields are
+ * set as the arguments are evaluated. Otherwise, like for records, the constructor whose parameters
+ * are the fields of the class in their declared order is called with the values in the end.
+ * <p>
+ * The method handles for the constructor and the fields are looked up once per class, and shared
+ * by the bindings of every evaluator to it, so evaluating doesn't use reflection. {@code int}, {@code long}, {@code double} and
+ * {@code boolean} fields are set without boxing their values. A {@code boolean} field can hold a
+ * Chain Argument, it's set to true if the chain occurs. Values are always resolved while evaluating,
+ * even if the evaluator resolves them lazily.
+ *
+ * @param <T> The class bound to.
+ */
+public final class ArgsBinding<T> {
+
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final byte NONE = 0;
+    private static final byte OBJECT = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte PRESENCE = 6;
+
+    /**
+     * The members of the classes bound to, which don't depend on the evaluator, so they never
+     * keep an evaluator from being collected.
+     */
+    private static final ClassValue<Members> MEMBERS = new ClassValue<Members>() {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members(type);
+        }
+    };
+
+    private final ArgsEvaler evaler;
+    private final Class<T> type;
+
+    /**
+     * Creates an object, {@code ()Object} if the fields are set, {@code (Object[])Object} if the values
+     * are given to the constructor.
+     */
+    private final MethodHandle factory;
+    private final boolean viaConstructor;
+
+    /**
+     * What the field or parameter of every slot holds, {@link #NONE} if nothing is bound to the slot.
+     */
+    private final byte[] kinds;
+
+    /**
+     * The setter of the field of every slot, {@code (Object, Object)void}.
+     */
+    private final MethodHandle[] setters;
+
+    /**
+     * The setter of the primitive field of every slot, {@code (Object, int)void} and so on.
+     */
+    private final MethodHandle[] unboxedSetters;
+
+    /**
+     * The constructor parameter of every slot, and the values of the parameters which aren't given.
+     */
+    private final int[] params;
+    private final Object[] defaults;
+
+    ArgsBinding(ArgsEvaler evaler, Class<T> type) {
+        this.evaler = evaler;
+        this.type = type;
+
+        Members members = MEMBERS.get(type);
+        factory = members.factory;
+        viaConstructor = members.viaConstructor;
+        defaults = members.defaults;
+
+        int slots = evaler.slotCount();
+        kinds = new byte[slots];
+        setters = new MethodHandle[slots];
+        unboxedSetters = new MethodHandle[slots];
+        params = new int[slots];
+        Arrays.fill(params, -1);
+
+        for (int i = 0; i < members.fields.length; i++) {
+            Field field = members.fields[i];
+            int slot = slotOf(field);
+            if (slot == SlotLayout.NO_SLOT || kinds[slot] != NONE) continue;
+
+            kinds[slot] = kindOf(field.getType(), evaler.valueTypeAt(slot), field);
+            if (viaConstructor) {
+                params[slot] = i;
+                continue;
+            }
+            MethodHandle setter = members.setter(i);
+            setters[slot] = setter.asType(SETTER);
+            if (kinds[slot] != OBJECT)
+                unboxedSetters[slot] = setter.asType(MethodType.methodType(void.class, Object.class,
+                        kinds[slot] == PRESENCE ? boolean.class : field.getType()));
+        }
+    }
+
+    /**
+     * The constructor and the fields of a class, looked up once.
+     */
+    private static final class Members {
+
+        /**
+         * Creates an object, {@code ()Object} if the fields are set, {@code (Object[])Object} if the
+         * values are given to the constructor.
+         */
+        private final MethodHandle factory;
+        private final boolean viaConstructor;
+
+        /**
+         * The fields of the class and its super classes if they're set, else the fields which are the
+         * parameters of the constructor, in their order.
+         */
+        private final Field[] fields;
+
+        /**
+         * The setter of every field looked up so far if they're set, else null. They're looked up as
+         * the fields are bound, so the fields without an argument can't be inaccessible.
+         */
+        private final MethodHandle[] setters;
+
+        /**
+         * The values of the parameters of the constructor which aren't given, else null.
+         */
+        private final Object[] defaults;
+
+        private Members(Class<?> type) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Constructor<?> noArgs = constructor(type);
+            List<Field> fields = new ArrayList<>();
+
+            if (noArgs != null) {
+                viaConstructor = false;
+                defaults = null;
+                factory = unreflect(lookup, noArgs).asType(MethodType.methodType(Object.class));
+
+                for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+                    for (Field field : c.getDeclaredFields())
+                        if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) fields.add(field);
+                this.fields = fields.toArray(new Field[0]);
+                setters = new MethodHandle[this.fields.length];
+
+            } else {
+                viaConstructor = true;
+                setters = null;
+
+                for (Field field : type.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) fields.add(field);
+                this.fields = fields.toArray(new Field[0]);
+                Class<?>[] fieldTypes = new Class<?>[this.fields.length];
+                for (int i = 0; i < fieldTypes.length; i++) fieldTypes[i] = this.fields[i].getType();
+
+                Constructor<?> constructor;
+                try {
+                    constructor = type.getDeclaredConstructor(fieldTypes);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException(type.getName() + " has neither a constructor without parameters, " +
+                            "nor one taking all its fields in order.", e);
+                }
+
+                defaults = new Object[fieldTypes.length];
+                for (int i = 0; i < fieldTypes.length; i++)
+                    if (fieldTypes[i].isPrimitive()) defaults[i] = Array.get(Array.newInstance(fieldTypes[i], 1), 0);
+
+                factory = unreflect(lookup, constructor)
+                        .asType(MethodType.genericMethodType(fieldTypes.length))
+                        .asSpreader(Object[].class, fieldTypes.length);
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException If the field isn't accessible.
+         */
+        private MethodHandle setter(int idx) {
+            // Method handles are immutable, so looking one up twice on a race is harmless.
+            MethodHandle setter = setters[idx];
+            if (setter == null) setters[idx] = setter = unreflect(MethodHandles.lookup(), fields[idx]);
+            return setter;
+        }
+    }
+
+    /**
+     * @return The class bound to.
+     */
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * Evaluates the given array of arguments into a new object.
+     *
+     * @param args The arguments to be evaluated.
+     * @return The object, with the fields of the evaluated arguments set.
+     * @see ArgsEvaler#evaluate(String[])
+     */
+    public T evaluate(String[] args) {
+        if (viaConstructor) {
+            ParameterSink sink = new ParameterSink();
+            evaler.evaluate(args, sink);
+            return construct(sink.values);
+        }
+        FieldSink sink = new FieldSink(create());
+        evaler.evaluate(args, sink);
+        return type.cast(sink.target);
+    }
+
+    /**
+     * Evaluates the given command line into a new object.
+     *
+     * @param line The command line to be evaluated.
+     * @return The object, with the fields of the evaluated arguments set.
+     * @throws IllegalArgumentException If a quote in the line is not closed.
+     * @see ArgsEvaler#evaluate(CharSequence)
+     */
+    public T evaluate(CharSequence line) {
+        if (viaConstructor) {
+            ParameterSink sink = new ParameterSink();
+            evaler.evaluate(line, sink);
+            return construct(sink.values);
+        }
+        FieldSink sink = new FieldSink(create());
+        evaler.evaluate(line, sink);
+        return type.cast(sink.target);
+    }
+
+    private Object create() {
+        try {
+            return (Object) factory.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private T construct(Object[] values) {
+        try {
+            return type.cast((Object) factory.invokeExact(values));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        throw new IllegalStateException("Couldn't create an instance of " + type.getName() + ".", t);
+    }
+
+    /**
+     * Sets the fields of the target as the values are found.
+     */
+    private final class FieldSink extends ArgsEvaler.Sink {
+        private final Object target;
+
+        private FieldSink(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        void putAt(int slot, Object value) {
+            try {
+                switch (kinds[slot]) {
+                    case NONE:
+                        return;
+                    case PRESENCE:
+                        unboxedSetters[slot].invokeExact(target, true);
+                        return;
+                    default:
+                        setters[slot].invokeExact(target, value);
+                }
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void putIntAt(int slot, int value) {
+            if (kinds[slot] != INT) {
+                putAt(slot, (Object) value);
+                return;
+            }
+            try {
+                unboxedSetters[slot].invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void putLongAt(int slot, long value) {
+            if (kinds[slot] != LONG) {
+                putAt(slot, (Object) value);
+                return;
+            }
+            try {
+                unboxedSetters[slot].invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void putDoubleAt(int slot, double value) {
+            if (kinds[slot] != DOUBLE) {
+                putAt(slot, (Object) value);
+                return;
+            }
+            try {
+                unboxedSetters[slot].invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void putBooleanAt(int slot, boolean value) {
+            if (kinds[slot] != BOOLEAN) {
+                putAt(slot, (Object) value);
+                return;
+            }
+            try {
+                unboxedSetters[slot].invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    /**
+     * Collects the values to give to the constructor.
+     */
+    private final class ParameterSink extends ArgsEvaler.Sink {
+        private final Object[] values = defaults.clone();
+
+        @Override
+        void putAt(int slot, Object value) {
+            if (kinds[slot] == NONE) return;
+            values[params[slot]] = kinds[slot] == PRESENCE ? Boolean.TRUE : value;
+        }
+
+        @Override
+        void putIntAt(int slot, int value) {
+            putAt(slot, (Object) value);
+        }
+
+        @Override
+        void putLongAt(int slot, long value) {
+            putAt(slot, (Object) value);
+        }
+
+        @Override
+        void putDoubleAt(int slot, double value) {
+            putAt(slot, (Object) value);
+        }
+
+        @Override
+        void putBooleanAt(int slot, boolean value) {
+            putAt(slot, (Object) value);
+        }
+    }
+
+    /**
+     * @return The slot of the argument held by the field, or {@link SlotLayout#NO_SLOT} if it's left alone.
+     * @throws IllegalArgumentException If the field is annotated but there's no such argument.
+     */
+    private int slotOf(Field field) {
+        String name = field.getName();
+        Named named = field.getAnnotation(Named.class);
+        Tagged tagged = field.getAnnotation(Tagged.class);
+        if (named != null && !named.value().isEmpty()) name = named.value();
+        else if (tagged != null) name = tagged.value();
+
+        int slot = field.isAnnotationPresent(Variadic.class) ? evaler.variadicSlot() : evaler.slotOf(name);
+
+        if (slot == SlotLayout.NO_SLOT && isAnnotated(field))
+            throw new IllegalArgumentException("There's no argument " + name + " for the field " + field + ".");
+        return slot;
+    }
+
+    private static boolean isAnnotated(AnnotatedElement element) {
+        return element.isAnnotationPresent(Indexed.class) || element.isAnnotationPresent(Named.class)
+                || element.isAnnotationPresent(Tagged.class) || element.isAnnotationPresent(Chain.class)
+                || element.isAnnotationPresent(Expression.class) || element.isAnnotationPresent(Variadic.class);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the field can't hold the values.
+     */
+    private static byte kindOf(Class<?> fieldType, Class<?> valueType, Field field) {
+        if ((fieldType == boolean.class || fieldType == Boolean.class) && valueType == String[].class)
+            return PRESENCE;
+        if (!canHold(fieldType, valueType))
+            throw new IllegalArgumentException("The field " + field + " can't hold values of " + valueType.getName() + ".");
+        if (fieldType == int.class) return INT;
+        if (fieldType == long.class) return LONG;
+        if (fieldType == double.class) return DOUBLE;
+        if (fieldType == boolean.class) return BOOLEAN;
+        return OBJECT;
+    }
+
+    private static boolean canHold(Class<?> fieldType, Class<?> valueType) {
+        Class<?> boxed = MethodType.methodType(valueType).wrap().returnType();
+        if (MethodType.methodType(fieldType).wrap().returnType().isAssignableFrom(boxed)) return true;
+        if (!fieldType.isPrimitive()) return false;
+
+        Class<?> primitive = MethodType.methodType(boxed).unwrap().returnType();
+        if (!primitive.isPrimitive()) return false;
+        try { // Primitive widening, like a long field holding int values.
+            MethodHandles.identity(primitive).asType(MethodType.methodType(fieldType, primitive));
+            return true;
+        } catch (WrongMethodTypeException e) {
+            return false;
+        }
+    }
+
+    private static Constructor<?> constructor(Class<?> type) {
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+            return lookup.unreflectConstructor(constructor);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("The constructor " + constructor + " isn't accessible.", e);
+        }
+    }
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Field field) {
+        try {
+            field.setAccessible(true);
+            return lookup.unreflectSetter(field);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("The field " + field + " isn't accessible.", e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package in.mcxiv.args;
+
+/**
+ * A cursor over the arguments being evaluated by {@link ArgsEvaler}.
+ * <p>
+ * Rather than removing the evaluated arguments from a list, they are marked as consumed.
+ * The consumed marks are kept in a path compressed skip table, so that moving from one
+ * unconsumed argument to the next costs a constant amortized time, no matter how many
+ * arguments were consumed in between. The original {@link Tokens} are never copied, and
+ * the cursor offers their matching operations for the evaluator to use.
+ * <p>
+ * A cursor can be reset over other tokens, reusing its skip table when it's big enough.
+ */
+final class ArgsCursor {
+
+    private Tokens args;
+    private int end;
+
+    /**
+     * {@code skip[i] == i} if the argument at i is not consumed, otherwise it points
+     * towards the first unconsumed argument after i. {@code skip[end]} is a sentinel.
+     */
+    private int[] skip;
+
+    /**
+     * The same towards the start, shifted by one: {@code before[i + 1] == i + 1} if the argument
+     * at i is not consumed, otherwise it points towards the last unconsumed argument before i.
+     * {@code before[0]} is a sentinel.
+     */
+    private int[] before;
+    private int remaining;
+
+    ArgsCursor(Tokens args) {
+        reset(args);
+    }
+
+    /**
+     * Points this cursor at the start of the given arguments, with nothing consumed.
+     *
+     * @return this
+     */
+    ArgsCursor reset(Tokens args) {
+        this.args = args;
+        this.end = args.size();
+        if (skip == null || skip.length < end + 1) {
+            skip = new int[end + 1];
+            before = new int[end + 1];
+        }
+        for (int i = 0; i <= end; i++) skip[i] = before[i] = i;
+        this.remaining = end;
+        return this;
+    }
+
+    /**
+     * @return The index one past the last argument, returned when there's nothing left to visit.
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * @return The number of arguments yet to be consumed.
+     */
+    int remaining() {
+        return remaining;
+    }
+
+    Tokens tokens() {
+        return args;
+    }
+
+    String string(int idx) {
+        return args.string(idx);
+    }
+
+    CharSequence view(int idx) {
+        return args.view(idx);
+    }
+
+    boolean equalTo(int idx, String string) {
+        return args.equalTo(idx, string);
+    }
+
+    int indexOf(int idx, String string) {
+        return args.indexOf(idx, string);
+    }
+
+    String substring(int idx, int from) {
+        return args.substring(idx, from);
+    }
+
+    <V> V lookup(TokenTable<V> table, int idx) {
+        return args.lookup(table, idx);
+    }
+
+    <V> V lookup(TokenTable<V> table, int idx, int from, int to) {
+        return args.lookup(table, idx, from, to);
+    }
+
+    CharSequence buffer(int idx) {
+        return args.buffer(idx);
+    }
+
+    int start(int idx) {
+        return args.start(idx);
+    }
+
+    int end(int idx) {
+        return args.end(idx);
+    }
+
+    boolean isConsumed(int idx) {
+        return skip[idx] != idx;
+    }
+
+    /**
+     * @return The index of the first unconsumed argument, or {@link #end()}.
+     */
+    int first() {
+        return seek(0);
+    }
+
+    /**
+     * @return The index of the first unconsumed argument after idx, or {@link #end()}.
+     */
+    int next(int idx) {
+        return seek(idx + 1);
+    }
+
+    /**
+     * @return The index of the first unconsumed argument at or after idx, or {@link #end()}.
+     */
+    int seek(int idx) {
+        int root = idx;
+        while (skip[root] != root) root = skip[root];
+        while (skip[idx] != root) {
+            int next = skip[idx];
+            skip[idx] = root;
+            idx = next;
+        }
+        return root;
+    }
+
+    /**
+     * Steps back over count unconsumed arguments before idx, the ones which become adjacent to
+     * the arguments after a match at idx once it's consumed.
+     *
+     * @return The index of the count-th unconsumed argument before idx, or of the first one if
+     * there aren't as many, or the first unconsumed argument at or after idx if there are none.
+     */
+    int back(int idx, int count) {
+        for (; count > 0; count--) {
+            int previous = previous(idx);
+            if (previous < 0) break;
+            idx = previous;
+        }
+        return seek(idx);
+    }
+
+    /**
+     * @return The index of the last unconsumed argument before idx, or -1.
+     */
+    private int previous(int idx) {
+        int root = idx;
+        while (before[root] != root) root = before[root];
+        while (before[idx] != root) {
+            int next = before[idx];
+            before[idx] = root;
+            idx = next;
+        }
+        return root - 1;
+    }
+
+    /**
+     * @return The index of the last of count unconsumed arguments starting at idx, or {@link #end()}
+     * if there aren't as many, that is, how far a match of that length at idx looks.
+     */
+    int nth(int idx, int count) {
+        for (int i = 1; i < count && idx < end; i++) idx = next(idx);
+        return idx;
+    }
+
+    /**
+     * Consumes the unconsumed argument at idx and the ones following it,
+     * that is, consumes count arguments as if they were adjacent.
+     */
+    void consume(int idx, int count) {
+        for (; count > 0 && idx < end; count--) {
+            skip[idx] = idx + 1;
+            before[idx + 1] = idx;
+            remaining--;
+            idx = seek(idx + 1);
+        }
+    }
+
+    void consume(int idx) {
+        consume(idx, 1);
+    }
+
+    /**
+     * @return A new array containing all the unconsumed arguments, in order.
+     */
+    String[] remainingArgs() {
+        String[] strings = new String[remaining];
+        for (int idx = first(), i = 0; idx < end; idx = next(idx))
+            strings[i++] = args.string(idx);
+        return strings;
+    }
+}
@@ -0,0 +1,105 @@
+package in.mcxiv.args;
+
+import java.util.Objects;
+
+/**
+ * An error in the arguments, collected by an evaluator instead of being thrown.
+ * See {@link ArgsEvaler.ArgsEvalerBuilder#setCollectingErrors(boolean)}.
+ *
+ * @see ArgsEvaler.ResultMap#errors()
+ */
+public final class ArgsError {
+
+    /**
+     * The kinds of errors an evaluator collects.
+     */
+    public enum Kind {
+        /**
+         * A tag is the last argument, so it has no value.
+         */
+        MISSING_VALUE,
+        /**
+         * There are less arguments left than Indexed Arguments, while all of them are required.
+         *
+         * @see ArgsEvaler.ArgsEvalerBuilder#setRequireAllIndexedArgsToBeFulfilled(boolean)
+         */
+        TOO_FEW_INDEXED,
+        /**
+         * The object resolver of the argument rejected the value, or failed to resolve it.
+         */
+        INVALID_VALUE,
+        /**
+         * A quote in the command line is not closed. The rest of the line is taken as the last argument.
+         */
+        UNTERMINATED_QUOTE
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final int position;
+    private final String value;
+
+    ArgsError(Kind kind, String name, int position, String value) {
+        this.kind = kind;
+        this.name = name;
+        this.position = position;
+        this.value = value;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return The name of the argument, or null for an {@link Kind#UNTERMINATED_QUOTE}.
+     * For {@link Kind#TOO_FEW_INDEXED}, it's the first Indexed Argument without a value.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return The index of the argument the error is at. For {@link Kind#TOO_FEW_INDEXED},
+     * it's the number of arguments, where the missing ones would be.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return The value which was rejected, or the argument with the unterminated quote, else null.
+     */
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ArgsError)) return false;
+        ArgsError error = (ArgsError) o;
+        return position == error.position && kind == error.kind && Objects.equals(name, error.name) && Objects.equals(value, error.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, name, position, value);
+    }
+
+    /**
+     * @return The message the evaluator would have thrown the error with.
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case MISSING_VALUE:
+                return "No value was provided for the tag " + name + ".";
+            case TOO_FEW_INDEXED:
+                return "Too few indexed arguments.";
+            case INVALID_VALUE:
+                return "The value " + value + " of " + name + " at " + position + " is invalid.";
+            default:
+                return "Unterminated quote in the argument at " + position + ".";
+        }
+    }
+}
@@ -2,12 +2,16 @@ package in.mcxiv.args;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The main class which evaluates the arguments.
@@ -21,56 +25,219 @@ import java.util.regex.Pattern;
 public class ArgsEvaler {
     private static final String VARIADIC_KEY = ArgsEvaler.class + ".VARIADIC_KEY";
 
-    private final HashMap<Class<?>, ObjectResolver> RESOLVERS = new HashMap<>(ObjectResolver.Default.RESOLVERS);
+    /**
+     * Returned by {@link #resolveOrReject(ExpressionIndex, int, int, String, int, Sink)} for a value which was rejected.
+     */
+    private static final Object REJECTED = new Object();
 
     private final EvaluationOrder[] evaluationOrder;
 
     private final boolean requireAllIndexedArgsToBeFulfilled;
     private final boolean hasVariadicEnding;
     private final boolean mixingEachTypeIsAllowed;
+    private final boolean lazyResolution;
+    private final boolean collectingErrors;
 
     private final String nameEquatorSyllable;
 
     private final ArgsTriplet[] indexed;
     private final ArgsTriplet[] named;
     private final ArgsTriplet[] tagged;
-    private final String[][][] chains; // words are basically length 1 chains.
-    private final Object[][][] expressions;
+    private final ChainTrie chains; // words are basically length 1 chains.
+    private final ExpressionIndex expressions;
+    private final TokenScanner scanner;
+
+    /**
+     * Null if the argument files aren't expanded.
+     */
+    private final ArgFiles argFiles;
+
+    private final SlotLayout layout;
+    private final int variadicSlot;
+
+    /**
+     * The type of the values of every slot, String[] for chains and Object[] for expressions.
+     */
+    private final Class<?>[] valueTypes;
+
+    /**
+     * The current snapshot of the object resolvers and the arguments bound to them.
+     * It's replaced as a whole, so that concurrent evaluations never see a half updated state.
+     */
+    private final AtomicReference<Bindings> bindings;
+
+    /**
+     * Null if there's no listener, in which case nothing is timed.
+     */
+    private final EvaluationListener listener;
+
+    /**
+     * The bindings created by {@link #bind(Class)}. The members of a class are looked up once for all
+     * the evaluators, the bindings only hold what depends on this one.
+     */
+    private final ConcurrentHashMap<Class<?>, ArgsBinding<?>> typedBindings = new ConcurrentHashMap<>();
 
     private ArgsEvaler(
             EvaluationOrder[] evaluationOrder,
             boolean requireAllIndexedArgsToBeFulfilled,
             boolean hasVariadicEnding,
             boolean mixingEachTypeIsAllowed,
+            boolean lazyResolution,
+            boolean collectingErrors,
             String nameEquatorSyllable,
             ArgsTriplet[] indexed,
             ArgsTriplet[] named,
             ArgsTriplet[] tagged,
-            String[][][] chains,
-            Object[][][] expressions) {
+            ChainTrie chains,
+            ExpressionIndex expressions,
+            ArgFiles argFiles,
+            SlotLayout layout,
+            Class<?>[] valueTypes,
+            Map<Class<?>, ObjectResolver> resolvers,
+            EvaluationListener listener) {
 
         this.evaluationOrder = evaluationOrder;
 
         this.requireAllIndexedArgsToBeFulfilled = requireAllIndexedArgsToBeFulfilled;
         this.hasVariadicEnding = hasVariadicEnding;
         this.mixingEachTypeIsAllowed = mixingEachTypeIsAllowed;
+        this.lazyResolution = lazyResolution;
+        this.collectingErrors = collectingErrors;
         this.nameEquatorSyllable = nameEquatorSyllable;
         this.indexed = indexed;
         this.named = named;
         this.tagged = tagged;
         this.chains = chains;
         this.expressions = expressions;
+        this.scanner = new TokenScanner(evaluationOrder, expressions, chains, namesOf(tagged), namesOf(named), nameEquatorSyllable);
+        this.argFiles = argFiles;
+        this.layout = layout;
+        this.variadicSlot = layout.slotOf(VARIADIC_KEY);
+        this.valueTypes = valueTypes;
+        this.listener = listener;
+        this.bindings = new AtomicReference<>(new Bindings(this, resolvers));
+    }
+
+    private static List<String> namesOf(ArgsTriplet[] triplets) {
+        List<String> names = new ArrayList<>(triplets.length);
+        for (ArgsTriplet triplet : triplets) names.add(triplet.name);
+        return names;
     }
 
     /**
-     * Add a new Object Resolver.
+     * Every argument name of this evaluator is given an integer slot when it's built.
+     * A slot can be used to get the value from a {@link ResultMap} produced by this evaluator
+     * without hashing the name again.
+     *
+     * @param name The name of an argument.
+     * @return The slot of the argument, or -1 if there's no argument with that name.
+     * @see ResultMap#getAt(int)
+     */
+    public int slotOf(String name) {
+        return layout.slotOf(name);
+    }
+
+    /**
+     * @return The number of slots, every slot is less than it.
+     */
+    int slotCount() {
+        return valueTypes.length;
+    }
+
+    /**
+     * @return The type of the values stored at the slot.
+     */
+    Class<?> valueTypeAt(int slot) {
+        return valueTypes[slot];
+    }
+
+    /**
+     * @return true if the errors are collected into the results rather than thrown.
+     */
+    boolean collectsErrors() {
+        return collectingErrors;
+    }
+
+    /**
+     * @return The slot of the Variadic Arguments.
+     */
+    int variadicSlot() {
+        return variadicSlot;
+    }
+
+    /**
+     * Binds this evaluator to a class, so that arguments are evaluated straight into its objects.
+     * <p>
+     * The binding is created once per class, see {@link ArgsBinding} for how the fields or the
+     * constructor parameters of the class are matched to the arguments.
+     *
+     * @param type The class to bind to.
+     * @return The binding, which can be shared by many threads.
+     * @throws IllegalArgumentException If the class can't be bound to the arguments of this evaluator.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ArgsBinding<T> bind(Class<T> type) {
+        return (ArgsBinding<T>) typedBindings.computeIfAbsent(type, t -> new ArgsBinding<>(this, t));
+    }
+
+    /**
+     * Starts an interactive session, which evaluates a command line again as it's edited, reusing
+     * what can't have changed, and suggests completions for it.
+     *
+     * @return A new session, to be used by one thread at a time.
+     * @see EvaluationSession
+     */
+    public EvaluationSession session() {
+        return new EvaluationSession(this);
+    }
+
+    /**
+     * Adds the completions of the token after the first count tokens, which start with the prefix,
+     * to the collection: the tags, the names followed by the equator, and the words and literals
+     * which can follow the tokens before in a chain or an expression.
+     */
+    void complete(Tokens tokens, int count, String prefix, Collection<String> out) {
+        Bindings bindings = this.bindings.get();
+
+        // The value of a tag can be anything.
+        if (count > 0 && tokens.lookup(bindings.tagged, count - 1) != null) return;
+
+        bindings.tagged.keysStartingWith(prefix, out);
+
+        List<String> names = new ArrayList<>();
+        bindings.named.keysStartingWith(prefix, names);
+        for (String name : names) out.add(name + nameEquatorSyllable);
+
+        for (int from = Math.max(0, count - chains.longest() + 1); from <= count; from++)
+            chains.wordsAfter(tokens, from, count, prefix, out);
+        for (int from = Math.max(0, count - expressions.longest() + 1); from <= count; from++)
+            expressions.literalsAfter(tokens, from, count, prefix, out);
+    }
+
+    /**
+     * Add a new Object Resolver, or replace an existing one.
+     * <p>
+     * The arguments are bound to their resolvers again, evaluations which have already started
+     * keep using the resolvers they started with. It's safe to call this while other threads
+     * are evaluating arguments with this instance.
      *
      * @param clazz    The output class of the resolver
      * @param resolver The Object Resolver
+     * @throws IllegalArgumentException If it's a {@link CachingResolver} and the objects of the class can't be cached.
      * @see ObjectResolver
      */
     public void addResolver(Class<?> clazz, ObjectResolver resolver) {
-        RESOLVERS.put(clazz, resolver);
+        Objects.requireNonNull(clazz, "clazz");
+        Objects.requireNonNull(resolver, "resolver");
+        CachingResolver.requireCacheable(clazz, resolver);
+
+        Bindings current, updated;
+        do {
+            current = bindings.get();
+            HashMap<Class<?>, ObjectResolver> resolvers = new HashMap<>(current.resolvers);
+            resolvers.put(clazz, resolver);
+            updated = new Bindings(this, resolvers);
+        } while (!bindings.compareAndSet(current, updated));
     }
 
     /**
@@ -82,9 +249,8 @@ public class ArgsEvaler {
      * @return The Map object mapping the argument names to their values.
      */
     public ResultMap evaluate(String[] args) {
-        LinkedList<String> list = new LinkedList<>();
-        Collections.addAll(list, args);
-        return evaluate(list, new ResultMap());
+        ResultMap map = new ResultMap(layout);
+        return evaluate(args, map, map.scratch());
     }
 
     /**
@@ -93,253 +259,657 @@ public class ArgsEvaler {
      * building an instance of {@link ArgsEvaler}.
      *
      * @param args The arguments to be evaluated.
-     * @param map  Provide an existing instance of ResultMap for reusing.
+     * @param map  Provide an existing instance of ResultMap for reusing, it's cleared first.
      * @return The Map object mapping the argument names to their values.
      */
     public ResultMap evaluate(String[] args, ResultMap map) {
         if (map == null) return evaluate(args);
-        LinkedList<String> list = new LinkedList<>();
-        Collections.addAll(list, args);
-        map.clear();
-        return evaluate(list, map);
+        map.reset(layout);
+        return evaluate(args, map, map.scratch());
     }
 
-    private ResultMap evaluate(List<String> args, ResultMap map) {
-
-
-        for (EvaluationOrder order : evaluationOrder)
-            switch (order) {
-                case EXPRESSION:
-                    evaluateExpressionArguments(args, map);
-                    break;
-                case CHAINED:
-                    evaluateChainedArguments(args, map);
-                    break;
-                case TAGGED:
-                    evaluateTaggedArguments(args, map);
-                    break;
-                case NAMED:
-                    evaluateNamedArguments(args, map);
-                    break;
-            }
+    /**
+     * Evaluates the given command line into a Map object.
+     * <p>
+     * The line is split into arguments the way a shell would split it: on whitespace, with
+     * single quotes, double quotes and backslashes to keep whitespace within an argument.
+     * The arguments are matched while they're still part of the line, and only the values
+     * given to the resolvers are copied out of it.
+     *
+     * @param line The command line to be evaluated.
+     * @return The Map object mapping the argument names to their values.
+     * @throws IllegalArgumentException If a quote in the line is not closed, unless errors are collected.
+     */
+    public ResultMap evaluate(CharSequence line) {
+        ResultMap map = new ResultMap(layout);
+        return evaluate(map.scratch().tokensOf(line, collectingErrors), map, map.scratch());
+    }
 
-        evaluateIndexedArguments(args, map);
+    /**
+     * Evaluates the given command line into a Map object.
+     *
+     * @param line The command line to be evaluated.
+     * @param map  Provide an existing instance of ResultMap for reusing, it's cleared first.
+     * @return The Map object mapping the argument names to their values.
+     * @throws IllegalArgumentException If a quote in the line is not closed, unless errors are collected.
+     * @see ArgsEvaler#evaluate(CharSequence)
+     */
+    public ResultMap evaluate(CharSequence line, ResultMap map) {
+        if (map == null) return evaluate(line);
+        map.reset(layout);
+        return evaluate(map.scratch().tokensOf(line, collectingErrors), map, map.scratch());
+    }
 
-        if (hasVariadicEnding && args.size() > 0)
-            evaluateVariadicArguments(args, map);
+    /**
+     * Evaluates the arguments packed in the buffer into a Map object.
+     * <p>
+     * The arguments are matched in the buffer, the Variadic Arguments are given as a
+     * {@link TokenBuffer.View} over it, and the values of type CharSequence are views of it too.
+     * The views are valid until the buffer is cleared.
+     *
+     * @param buffer The arguments to be evaluated.
+     * @return The Map object mapping the argument names to their values.
+     * @see ResultMap#getVariadicTokens()
+     */
+    public ResultMap evaluate(TokenBuffer buffer) {
+        ResultMap map = new ResultMap(layout);
+        return evaluate(buffer.tokens(), map, map.scratch());
+    }
 
-        return map;
+    /**
+     * Evaluates the arguments packed in the buffer into a Map object.
+     *
+     * @param buffer The arguments to be evaluated.
+     * @param map    Provide an existing instance of ResultMap for reusing, it's cleared first.
+     * @return The Map object mapping the argument names to their values.
+     * @see ArgsEvaler#evaluate(TokenBuffer)
+     */
+    public ResultMap evaluate(TokenBuffer buffer, ResultMap map) {
+        if (map == null) return evaluate(buffer);
+        map.reset(layout);
+        return evaluate(buffer.tokens(), map, map.scratch());
     }
 
-    private void evaluateExpressionArguments(List<String> args, ResultMap map) {
+    /**
+     * Scans a stream of tokens, like the words of log records, for Expression and Chained
+     * Arguments, and gives every match to the listener, rather than the last one of every name.
+     *
+     * @param tokens   The tokens, which may never end.
+     * @param listener Receives the matches as they're found.
+     * @return The number of matches.
+     * @see ArgsEvaler#scan(Spliterator, MatchListener)
+     */
+    public long scan(Iterator<String> tokens, MatchListener listener) {
+        return scan(Spliterators.spliteratorUnknownSize(tokens, Spliterator.ORDERED), listener);
+    }
 
-        for (int argsIdx = 0, argsS = args.size(); argsIdx < argsS; argsIdx++) {
+    /**
+     * Scans a stream of tokens for Expression and Chained Arguments, and gives every match to the listener.
+     * <p>
+     * Only as many tokens as there are in the longest expression or chain are held at a time, so a
+     * stream of any length is scanned in the same memory. At every token, the expressions and the
+     * chains are tried in the evaluation order, and the first match found is given to the listener.
+     * The scan goes on after the tokens it matched, or at the next token if there's no match.
+     * The values of the expressions are resolved as they're resolved by {@link #evaluate(String[])},
+     * and a value which can't be resolved is thrown, even if errors are collected.
+     *
+     * @param tokens   The tokens, which may never end.
+     * @param listener Receives the matches as they're found.
+     * @return The number of matches.
+     */
+    public long scan(Spliterator<String> tokens, MatchListener listener) {
+        Objects.requireNonNull(listener, "listener");
+        ExpressionIndex expressions = bindings.get().expressions;
+
+        int width = 0;
+        for (EvaluationOrder phase : evaluationOrder)
+            if (phase == EvaluationOrder.EXPRESSION) width = Math.max(width, expressions.longest());
+            else if (phase == EvaluationOrder.CHAINED) width = Math.max(width, chains.longest());
+        if (width == 0) return 0;
+
+        Scratch scratch = new Scratch();
+        int[] positions = scratch.positions(expressions.longest());
+        Object[] values = scratch.values(expressions.longest());
+        Matcher[] matchers = scratch.matchers(expressions.patterns());
+        Tokens.Window window = new Tokens.Window(width);
+
+        long position = 0, matches = 0;
+        while (window.fill(tokens)) {
+            ArgsCursor args = scratch.cursorOver(window);
+            int length = 0;
+
+            for (int phase = 0; phase < evaluationOrder.length && length == 0; phase++) {
+                int id;
+                if (evaluationOrder[phase] == EvaluationOrder.EXPRESSION) {
+                    if ((id = expressions.match(args, 0, positions, values, matchers)) == ExpressionIndex.NO_MATCH) continue;
+                    listener.matched(expressions.name(id), position, objectsOf(expressions, id, args, positions, values, null));
+                    length = expressions.expression(id).length;
+
+                } else if (evaluationOrder[phase] == EvaluationOrder.CHAINED) {
+                    if ((id = chains.match(args, 0)) == ChainTrie.NO_MATCH) continue;
+                    listener.matched(chains.name(id), position, chains.chain(id));
+                    length = chains.chain(id).length;
+                }
+            }
 
-            boolean wasAnArgFound = false;
+            if (length == 0) length = 1;
+            else matches++;
+            window.advance(length);
+            position += length;
+        }
 
-            CHAIN_ITERATOR:
-            for (Object[][] pair : expressions) {
+        return matches;
+    }
 
-                String name = (String) pair[0][0];
-                Object[] expression = pair[1];
+    /**
+     * Evaluates each of the given arrays of arguments into a Map object, in parallel,
+     * using the common {@link ForkJoinPool}.
+     *
+     * @param argsList The arrays of arguments to be evaluated.
+     * @return The Map objects, in the same order as the arrays of arguments.
+     * @see ArgsEvaler#evaluateAll(List, Executor)
+     */
+    public List<ResultMap> evaluateAll(List<String[]> argsList) {
+        return evaluateAll(argsList, ForkJoinPool.commonPool());
+    }
 
-                Object[] objects = new Object[expression.length];
+    /**
+     * Evaluates each of the given arrays of arguments into a Map object, in parallel.
+     * <p>
+     * The arrays are split into contiguous chunks, one task per chunk is given to the executor,
+     * and every task reuses its own scratch space for all the arrays in its chunk.
+     * If any evaluation fails, the exception is rethrown here.
+     *
+     * @param argsList The arrays of arguments to be evaluated.
+     * @param executor The executor to run the evaluations on.
+     * @return The Map objects, in the same order as the arrays of arguments.
+     */
+    public List<ResultMap> evaluateAll(List<String[]> argsList, Executor executor) {
+        ResultMap[] maps = new ResultMap[argsList.size()];
+        forEachChunk(argsList, executor, (args, idx, scratch) ->
+                maps[idx] = evaluate(args, new ResultMap(layout), scratch));
+        return Arrays.asList(maps);
+    }
 
-                if (expression.length > argsS - argsIdx) continue;
+    /**
+     * Evaluates each of the arrays of arguments of the given stream into a Map object, in parallel,
+     * using the common {@link ForkJoinPool}. The stream must be finite.
+     *
+     * @param argsStream The arrays of arguments to be evaluated.
+     * @return The Map objects, in the same order as the arrays of arguments.
+     * @see ArgsEvaler#evaluateAll(List, Executor)
+     */
+    public List<ResultMap> evaluateAll(Stream<String[]> argsStream) {
+        return evaluateAll(argsStream, ForkJoinPool.commonPool());
+    }
 
-                for (int exprIdx = 0; exprIdx < expression.length; exprIdx++) {
+    /**
+     * Evaluates each of the arrays of arguments of the given stream into a Map object, in parallel.
+     * The stream must be finite.
+     *
+     * @param argsStream The arrays of arguments to be evaluated.
+     * @param executor   The executor to run the evaluations on.
+     * @return The Map objects, in the same order as the arrays of arguments.
+     * @see ArgsEvaler#evaluateAll(List, Executor)
+     */
+    public List<ResultMap> evaluateAll(Stream<String[]> argsStream, Executor executor) {
+        return evaluateAll(argsStream.collect(Collectors.toList()), executor);
+    }
 
-                    String args_value = args.get(argsIdx + exprIdx);
-                    Object expr = expression[exprIdx];
+    /**
+     * Evaluates each of the given arrays of arguments, in parallel, and passes the results to the
+     * given call back instead of collecting them.
+     * <p>
+     * Every task reuses a single {@link ResultMap} for all the arrays in its chunk, so the call back
+     * must not keep the map it's given once it returns. The call back is invoked concurrently from
+     * the threads of the executor, along with the index of the array of arguments evaluated.
+     *
+     * @param argsList The arrays of arguments to be evaluated.
+     * @param executor The executor to run the evaluations on.
+     * @param consumer The call back receiving each result and the index of its arguments.
+     * @see ArgsEvaler#evaluateAll(List, Executor)
+     */
+    public void forEachEvaluated(List<String[]> argsList, Executor executor, ObjIntConsumer<ResultMap> consumer) {
+        forEachChunk(argsList, executor, (args, idx, scratch) ->
+                consumer.accept(evaluate(args, scratch.reusableMap(layout), scratch), idx));
+    }
 
-                    if (expr instanceof String) {
-                        if (!Objects.equals(expr, args_value))
-                            continue CHAIN_ITERATOR;
+    @FunctionalInterface
+    private interface ChunkTask {
+        void evaluate(String[] args, int idx, Scratch scratch);
+    }
 
-                    } else if (expr instanceof Class) {
-                        if (!RESOLVERS.containsKey(expr))
-                            continue CHAIN_ITERATOR;
+    private void forEachChunk(List<String[]> argsList, Executor executor, ChunkTask task) {
+        int size = argsList.size();
+        if (size == 0) return;
+
+        int parallelism = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        int chunks = Math.min(size, parallelism * 4);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = (int) ((long) size * chunk / chunks);
+            int to = (int) ((long) size * (chunk + 1) / chunks);
+            futures[chunk] = CompletableFuture.runAsync(() -> {
+                Scratch scratch = new Scratch();
+                for (int idx = from; idx < to; idx++)
+                    task.evaluate(argsList.get(idx), idx, scratch);
+            }, executor);
+        }
 
-                    } else {
-                        Matcher matcher;
-                        if (expr instanceof Pattern && (matcher = ((Pattern) expr).matcher(args_value)).matches()) {
-                            if (matcher.groupCount() >= 1)
-                                objects[exprIdx] = matcher.group(1);
-                            else objects[exprIdx] = matcher.group();
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
 
-                        } else if (expr instanceof StringPredicate && ((StringPredicate) expr).test(args_value)) {
-                            objects[exprIdx] = args_value;
+    private ResultMap evaluate(String[] argsArray, ResultMap map, Scratch scratch) {
+        return evaluate(tokensOf(argsArray, 0, scratch), map, scratch);
+    }
 
-                        } else if (expr instanceof StringPredicateResolver && ((StringPredicateResolver) expr).test(args_value)) {
-                            objects[exprIdx] = ((StringPredicateResolver) expr).apply(args_value);
+    /**
+     * @param from The index of the first argument evaluated.
+     * @return The tokens of the arguments from the index, with the argument files expanded if any is named.
+     */
+    private Tokens tokensOf(String[] args, int from, Scratch scratch) {
+        if (argFiles != null && argFiles.occursIn(args, from)) return argFiles.expand(args, from).tokens();
+        return from == 0 ? scratch.tokensOf(args) : new Tokens.Tail(scratch.tokensOf(args), from);
+    }
 
-                        } else if (expr instanceof StringPatternResolver && (matcher = ((StringPatternResolver) expr).pattern.matcher(args_value)).matches()) {
-                            String match;
-                            if (matcher.groupCount() >= 1)
-                                match = matcher.group(1);
-                            else match = matcher.group();
-                            objects[exprIdx] = RESOLVERS.get(((StringPatternResolver) expr).clazz).objectify(((StringPatternResolver) expr).clazz, match);
+    private ResultMap evaluate(Tokens tokens, ResultMap map, Scratch scratch) {
+        evaluate(tokens, map.sink, scratch);
+        return map;
+    }
 
-                        } else
-                            continue CHAIN_ITERATOR;
-                    }
-                }
+    /**
+     * Evaluates the arguments from an index like {@link #evaluate(String[])} evaluates all of them,
+     * used by {@link CommandRouter} to evaluate the arguments after a command without copying them.
+     */
+    ResultMap evaluate(String[] args, int from) {
+        ResultMap map = new ResultMap(layout);
+        return evaluate(tokensOf(args, from, map.scratch()), map, map.scratch());
+    }
 
-                // If the expression didn't match completely, this part wont be ran.
+    /**
+     * Evaluates the tokens of a line from an index like {@link #evaluate(CharSequence)} evaluates
+     * all of them, used by {@link CommandRouter} to evaluate the arguments after a command.
+     *
+     * @param line The line, split leniently.
+     * @throws IllegalArgumentException If a quote is not closed, unless the errors are collected.
+     */
+    ResultMap evaluate(LineTokens line, int from) {
+        if (!collectingErrors) line.requireTerminated();
+        ResultMap map = new ResultMap(layout);
+        return evaluate(from == 0 ? line : new Tokens.Tail(line, from), map, map.scratch());
+    }
 
-                for (int exprIdx = 0; exprIdx < expression.length; exprIdx++) {
+    /**
+     * Evaluates the arguments into the given sink, used by {@link ArgsBinding} to write the values
+     * straight into an object.
+     */
+    void evaluate(String[] args, Sink sink) {
+        Scratch scratch = new Scratch();
+        evaluate(tokensOf(args, 0, scratch), sink, scratch);
+    }
 
-                    Object expr = expression[exprIdx];
+    /**
+     * @see ArgsEvaler#evaluate(String[], Sink)
+     */
+    void evaluate(CharSequence line, Sink sink) {
+        Scratch scratch = new Scratch();
+        evaluate(scratch.tokensOf(line, collectingErrors), sink, scratch);
+    }
 
-                    if (expr instanceof String) {
-                        objects[exprIdx] = expr;
+    private void evaluate(Tokens tokens, Sink sink, Scratch scratch) {
+        evaluate(tokens, sink, scratch, null);
+    }
 
-                    } else if (expr instanceof Class) {
-                        objects[exprIdx] = RESOLVERS.get(expr).objectify((Class) expr, args.get(argsIdx + exprIdx));
+    /**
+     * Evaluates the tokens into the map, reusing the matches recorded by the trace which can't have
+     * been changed by the tokens edited since, used by {@link EvaluationSession}.
+     */
+    ResultMap evaluate(Tokens tokens, ResultMap map, EvaluationTrace trace) {
+        if (map == null) map = new ResultMap(layout);
+        else map.reset(layout);
+        trace.target(map.sink, evaluationOrder.length, bindings.get());
+        evaluate(tokens, trace, map.scratch(), trace);
+        return map;
+    }
 
-                    } else {
-                        // There's nothing to do yet.
-                    }
-                }
+    /**
+     * @param trace Null, unless the matches are recorded for an {@link EvaluationSession}, in which case it's the sink too.
+     */
+    private void evaluate(Tokens tokens, Sink sink, Scratch scratch, EvaluationTrace trace) {
+        Bindings bindings = trace == null ? this.bindings.get() : (Bindings) trace.snapshot();
+        ArgsCursor args = scratch.cursorOver(tokens);
 
-                map.put(name, objects);
+        int position = tokens.unterminated();
+        if (position >= 0) {
+            (trace == null ? sink : trace.target()).reject(new ArgsError(ArgsError.Kind.UNTERMINATED_QUOTE, null, position, tokens.string(position)));
+        }
 
-                for (Object ignored : expression)
-                    args.remove(argsIdx);
-                argsIdx -= expression.length;
-                argsS -= expression.length;
+        EvaluationListener listener = this.listener;
+        long start = listener == null ? 0 : System.nanoTime(), phaseStart = start;
 
-                wasAnArgFound = true;
+        // Without mixing, every phase stops at the first argument it doesn't match, so it visits only its own.
+        TokenScanner.Candidates candidates = mixingEachTypeIsAllowed ? scratch.candidates(tokens, scanner) : null;
 
-                break;
+        for (int phase = 0; phase < evaluationOrder.length; phase++) {
+            int from = trace == null ? args.first() : trace.replay(phase, args,
+                    evaluationOrder[phase] == EvaluationOrder.EXPRESSION || evaluationOrder[phase] == EvaluationOrder.CHAINED);
+            ArgumentTypes type;
+            long counts;
+            switch (evaluationOrder[phase]) {
+                case EXPRESSION:
+                    type = ArgumentTypes.EXPRESSION;
+                    counts = evaluateExpressionArguments(args, from, sink, bindings.expressions, scratch, candidates, trace);
+                    break;
+                case CHAINED:
+                    type = ArgumentTypes.CHAINED;
+                    counts = evaluateChainedArguments(args, from, sink, candidates, trace);
+                    break;
+                case TAGGED:
+                    type = ArgumentTypes.TAGGED;
+                    counts = evaluateTaggedArguments(args, from, sink, bindings.tagged, candidates, trace);
+                    break;
+                case NAMED:
+                    type = ArgumentTypes.NAMED;
+                    counts = evaluateNamedArguments(args, from, sink, bindings.named, candidates, trace);
+                    break;
+                default:
+                    continue;
             }
+            if (listener != null) phaseStart = report(listener, type, phaseStart, counts);
+        }
 
-            if (!mixingEachTypeIsAllowed)
-                if (!wasAnArgFound)
-                    break;
+        // Indexed and Variadic Arguments depend on all that's left, so they're never recorded.
+        if (trace != null) sink = trace.target();
+
+        long counts = evaluateIndexedArguments(args, sink, bindings.indexed);
+        if (listener != null) phaseStart = report(listener, ArgumentTypes.INDEXED, phaseStart, counts);
+
+        if (hasVariadicEnding && args.remaining() > 0) {
+            evaluateVariadicArguments(args, sink);
+            if (listener != null) report(listener, ArgumentTypes.VARIADIC, phaseStart, counts(1, 1));
         }
+
+        if (listener != null) listener.evaluated(System.nanoTime() - start);
     }
 
-    private void evaluateChainedArguments(List<String> args, ResultMap map) {
+    /**
+     * The phases return the number of positions they looked at and the number of arguments they
+     * found packed in a long, which costs nothing to ignore when there's no listener.
+     */
+    private static long counts(int attempts, int hits) {
+        return (long) attempts << 32 | hits & 0xFFFFFFFFL;
+    }
 
-        for (int argsIdx = 0, argsS = args.size(); argsIdx < argsS; argsIdx++) {
+    /**
+     * @return The first position a phase looks at: from, or the first candidate from on if mixing is allowed.
+     */
+    private static int first(ArgsCursor args, TokenScanner.Candidates candidates, int phase, int from) {
+        if (candidates == null) return from;
+        candidates.rewind(phase);
+        return candidates.seek(phase, args, from);
+    }
 
-            boolean wasAnArgFound = false;
+    /**
+     * @return The next position at or after idx a phase looks at: the next argument left, or the
+     * next candidate of the phase if mixing is allowed.
+     */
+    private static int seek(ArgsCursor args, TokenScanner.Candidates candidates, int phase, int idx) {
+        return candidates == null ? args.seek(idx) : candidates.seek(phase, args, idx);
+    }
 
-            CHAIN_ITERATOR:
-            for (String[][] pair : chains) {
+    /**
+     * With mixing allowed, a phase looks at every argument left from its start, by trying to match
+     * there or by the scanner ruling it out. The ones it didn't match are still left after it.
+     *
+     * @return The number of positions the phase looked at.
+     */
+    private static int looked(ArgsCursor args, int from, int hits) {
+        int looked = args.remaining() + hits;
+        for (int idx = args.first(); idx < from; idx = args.next(idx)) looked--;
+        return looked;
+    }
+
+    /**
+     * @return The time the phase was reported at, that is, the start of the next phase.
+     */
+    private static long report(EvaluationListener listener, ArgumentTypes type, long phaseStart, long counts) {
+        long now = System.nanoTime();
+        listener.phaseEvaluated(type, now - phaseStart, (int) (counts >>> 32), (int) counts);
+        return now;
+    }
 
-                String name = pair[0][0];
-                String[] chain = pair[1];
+    private long evaluateExpressionArguments(ArgsCursor args, int from, Sink sink, ExpressionIndex expressions, Scratch scratch, TokenScanner.Candidates candidates, EvaluationTrace trace) {
 
-                if (chain.length > argsS - argsIdx) continue;
+        int[] positions = scratch.positions(expressions.longest());
+        Object[] values = scratch.values(expressions.longest());
+        Matcher[] matchers = scratch.matchers(expressions.patterns());
 
-                for (int chainIdx = 0; chainIdx < chain.length; chainIdx++)
-                    if (!Objects.equals(chain[chainIdx], args.get(argsIdx + chainIdx)))
-                        continue CHAIN_ITERATOR;
+        int attempts = 0, hits = 0;
 
-                // If the chain didn't match completely, this part wont be ran.
+        for (int argsIdx = first(args, candidates, TokenScanner.EXPRESSION, from), argsE = args.end(); argsIdx < argsE; attempts++) {
 
-                map.put(name, chain);
+            int id = expressions.match(args, argsIdx, positions, values, matchers);
+            if (trace != null) trace.attempted(argsIdx, expressions.reach(args, argsIdx));
 
-                for (Object ignored : chain)
-                    args.remove(argsIdx);
-                argsIdx -= chain.length;
-                argsS -= chain.length;
+            if (id != ExpressionIndex.NO_MATCH) {
+                Object[] objects = objectsOf(expressions, id, args, positions, values, collectingErrors ? sink : null);
+                int length = expressions.expression(id).length;
+                if (objects != null) sink.putAt(expressions.slot(id), objects);
 
-                wasAnArgFound = true;
+                if (trace != null) trace.hit(argsIdx, length);
+                args.consume(argsIdx, length);
+                argsIdx = seek(args, candidates, TokenScanner.EXPRESSION, args.back(argsIdx, length - 1));
+                hits++;
 
+            } else if (mixingEachTypeIsAllowed)
+                argsIdx = seek(args, candidates, TokenScanner.EXPRESSION, argsIdx + 1);
+            else {
+                if (trace != null) trace.stopped();
+                attempts++;
                 break;
             }
+        }
 
-            if (!mixingEachTypeIsAllowed)
-                if (!wasAnArgFound)
-                    break;
+        return counts(candidates == null ? attempts : looked(args, from, hits), hits);
+    }
+
+    /**
+     * Fills in the literals of a matched expression and resolves its values.
+     *
+     * @param sink Receives the errors if they're collected, or null to throw them.
+     * @return The objects of the expression, or null if a value was rejected.
+     */
+    private static Object[] objectsOf(ExpressionIndex expressions, int id, ArgsCursor args, int[] positions, Object[] values, Sink sink) {
+        Object[] expression = expressions.expression(id);
+        Object[] objects = new Object[expression.length];
+        boolean rejected = false;
+
+        for (int exprIdx = 0; exprIdx < expression.length; exprIdx++) {
+
+            if (expressions.isLiteral(id, exprIdx)) {
+                objects[exprIdx] = expression[exprIdx];
+
+            } else if (expressions.isResolved(id, exprIdx)) {
+                String value = expressions.isClass(id, exprIdx) ? args.string(positions[exprIdx]) : (String) values[exprIdx];
+                values[exprIdx] = null;
+                if (sink == null) objects[exprIdx] = expressions.resolve(id, exprIdx, value);
+                else if ((objects[exprIdx] = resolveOrReject(expressions, id, exprIdx, value, positions[exprIdx], sink)) == REJECTED)
+                    rejected = true;
+
+            } else {
+                objects[exprIdx] = values[exprIdx];
+                values[exprIdx] = null;
+            }
         }
+
+        return rejected ? null : objects;
     }
 
-    private void evaluateTaggedArguments(List<String> args, ResultMap map) {
+    private long evaluateChainedArguments(ArgsCursor args, int from, Sink sink, TokenScanner.Candidates candidates, EvaluationTrace trace) {
 
-        for (int argsIdx = 0, argsS = args.size(); argsIdx < argsS; argsIdx++) {
+        int attempts = 0, hits = 0;
 
-            String name = args.get(argsIdx);
+        for (int argsIdx = first(args, candidates, TokenScanner.CHAINED, from), argsE = args.end(); argsIdx < argsE; attempts++) {
 
-            boolean wasAnArgFound = false;
+            int chain = chains.match(args, argsIdx);
+            if (trace != null) trace.attempted(argsIdx, chains.reach(args, argsIdx));
 
-            for (ArgsTriplet triplet : tagged) {
+            if (chain != ChainTrie.NO_MATCH) {
+                sink.putAt(chains.slot(chain), chains.chain(chain));
+                if (trace != null) trace.hit(argsIdx, chains.chain(chain).length);
+                args.consume(argsIdx, chains.chain(chain).length);
+                argsIdx = seek(args, candidates, TokenScanner.CHAINED, args.back(argsIdx, chains.chain(chain).length - 1));
+                hits++;
 
+            } else if (mixingEachTypeIsAllowed)
+                argsIdx = seek(args, candidates, TokenScanner.CHAINED, argsIdx + 1);
+            else {
+                if (trace != null) trace.stopped();
+                attempts++;
+                break;
+            }
+        }
 
-                if (Objects.equals(triplet.name, name)) {
-                    map.put(triplet.name, RESOLVERS.get(triplet.clazz).objectify(triplet.clazz, args.get(argsIdx + 1)));
+        return counts(candidates == null ? attempts : looked(args, from, hits), hits);
+    }
 
-                    args.remove(argsIdx); // The name
-                    args.remove(argsIdx); // The value
-                    argsIdx -= 1; // TODO: test it
-                    argsS -= 2;
+    private long evaluateTaggedArguments(ArgsCursor args, int from, Sink sink, TokenTable<ArgsTriplet> tagged, TokenScanner.Candidates candidates, EvaluationTrace trace) {
 
-                    wasAnArgFound = true;
+        int attempts = 0, hits = 0;
 
-                    break; // Skip to next argument
+        for (int argsIdx = first(args, candidates, TokenScanner.TAGGED, from), argsE = args.end(); argsIdx < argsE; attempts++) {
 
-                }
-            }
+            ArgsTriplet triplet = args.lookup(tagged, argsIdx);
+            if (trace != null) trace.attempted(argsIdx, triplet == null ? argsIdx : args.next(argsIdx));
 
-            if (!mixingEachTypeIsAllowed)
-                if (!wasAnArgFound)
-                    break;
-        }
-    }
+            if (triplet != null) {
+                int valueIdx = args.next(argsIdx);
+                if (valueIdx == argsE) {
+                    if (!collectingErrors)
+                        throw new IllegalArgumentException("No value was provided for the tag " + triplet.name + ".");
+                    sink.reject(new ArgsError(ArgsError.Kind.MISSING_VALUE, triplet.name, argsIdx, null));
+                    if (trace != null) trace.hit(argsIdx, 1);
+                    args.consume(argsIdx);
+                    break; // It was the last argument
+                }
 
-    private void evaluateNamedArguments(List<String> args, ResultMap map) {
+                resolveInto(triplet, sink, args, valueIdx, 0);
 
-        for (int argsIdx = 0, argsS = args.size(); argsIdx < argsS; argsIdx++) {
+                if (trace != null) trace.hit(argsIdx, 2);
+                args.consume(argsIdx, 2); // The name and the value
+                argsIdx = seek(args, candidates, TokenScanner.TAGGED, argsIdx);
+                hits++;
 
-            String pair = args.get(argsIdx);
-            if (!pair.contains(nameEquatorSyllable)) {
-                if (mixingEachTypeIsAllowed) continue;
-                else break;
+            } else if (mixingEachTypeIsAllowed)
+                argsIdx = seek(args, candidates, TokenScanner.TAGGED, argsIdx + 1);
+            else {
+                if (trace != null) trace.stopped();
+                attempts++;
+                break;
             }
+        }
 
-            boolean wasAnArgFound = false;
+        return counts(candidates == null ? attempts : looked(args, from, hits), hits);
+    }
 
-            for (ArgsTriplet triplet : named) {
-                if (pair.startsWith(triplet.name)) {
+    private long evaluateNamedArguments(ArgsCursor args, int from, Sink sink, TokenTable<ArgsTriplet> named, TokenScanner.Candidates candidates, EvaluationTrace trace) {
 
-                    String[] strings = pair.split(nameEquatorSyllable, 2);
+        int attempts = 0, hits = 0;
 
-                    if (!strings[0].equals(triplet.name)) continue;
+        for (int argsIdx = first(args, candidates, TokenScanner.NAMED, from), argsE = args.end(); argsIdx < argsE; attempts++) {
 
-                    map.put(triplet.name, RESOLVERS.get(triplet.clazz).objectify(triplet.clazz, strings[1]));
+            int equator = args.indexOf(argsIdx, nameEquatorSyllable);
+            ArgsTriplet triplet = equator < 0 ? null : args.lookup(named, argsIdx, 0, equator);
+            if (trace != null) trace.attempted(argsIdx, argsIdx);
 
-                    args.remove(argsIdx);
-                    argsIdx--;
-                    argsS--;
+            if (triplet != null) {
+                resolveInto(triplet, sink, args, argsIdx, equator + nameEquatorSyllable.length());
 
-                    wasAnArgFound = true;
+                if (trace != null) trace.hit(argsIdx, 1);
+                args.consume(argsIdx);
+                argsIdx = seek(args, candidates, TokenScanner.NAMED, argsIdx);
+                hits++;
 
-                    break;
-                }
+            } else if (mixingEachTypeIsAllowed)
+                argsIdx = seek(args, candidates, TokenScanner.NAMED, argsIdx + 1);
+            else {
+                if (trace != null) trace.stopped();
+                attempts++;
+                break;
             }
-
-            if (!mixingEachTypeIsAllowed)
-                if (!wasAnArgFound)
-                    break;
         }
+
+        return counts(candidates == null ? attempts : looked(args, from, hits), hits);
     }
 
-    private void evaluateIndexedArguments(List<String> args, ResultMap map) {
-        if (requireAllIndexedArgsToBeFulfilled && indexed.length > args.size())
-            throw new IllegalArgumentException("Too few indexed arguments.");
+    private long evaluateIndexedArguments(ArgsCursor args, Sink sink, ArgsTriplet[] indexed) {
+        if (requireAllIndexedArgsToBeFulfilled && indexed.length > args.remaining()) {
+            if (!collectingErrors)
+                throw new IllegalArgumentException("Too few indexed arguments.");
+            sink.reject(new ArgsError(ArgsError.Kind.TOO_FEW_INDEXED, indexed[args.remaining()].name, args.end(), null));
+        }
+
+        int hits = Math.min(indexed.length, args.remaining());
 
-        for (int i = 0, s = Math.min(indexed.length, args.size()); i < s; i++)
-            map.put(indexed[i].name, RESOLVERS.get(indexed[i].clazz).objectify(indexed[i].clazz, args.get(i)));
+        for (int i = 0, argsIdx = args.first(), argsE = args.end(); i < indexed.length && argsIdx < argsE; i++, argsIdx = args.next(argsIdx))
+            resolveInto(indexed[i], sink, args, argsIdx, 0);
 
-        for (int i = 0, s = Math.min(indexed.length, args.size()); i < s; i++)
-            args.remove(0);
+        args.consume(args.first(), hits);
+        return counts(hits, hits);
     }
 
-    private void evaluateVariadicArguments(List<String> args, ResultMap map) {
-        map.put(VARIADIC_KEY, args.toArray(new String[0]));
+    private void evaluateVariadicArguments(ArgsCursor args, Sink sink) {
+        Tokens tokens = args.tokens();
+        if (tokens instanceof TokenBuffer.Regions && sink instanceof ResultMap.MapSink)
+            sink.putAt(variadicSlot, ((TokenBuffer.Regions) tokens).remaining(args));
+        else sink.putAt(variadicSlot, args.remainingArgs());
+    }
+
+    /**
+     * Resolves the value from the region of the argument it's in, so that a String is created only
+     * if the resolver needs one, the value is resolved lazily, or it's rejected.
+     *
+     * @param position The index of the argument the value is from.
+     * @param from     The index of the value within the argument, like after the equator of a name.
+     */
+    private void resolveInto(ArgsTriplet triplet, Sink sink, ArgsCursor args, int position, int from) {
+        CharSequence buffer = args.buffer(position);
+        int start = args.start(position) + from, end = args.end(position);
+        if (collectingErrors) {
+            if (triplet.accepts(buffer, start, end)) try {
+                triplet.resolveInto(sink, buffer, start, end);
+                return;
+            } catch (RuntimeException e) {
+                // Collected as the value being invalid, like the ones rejected without an exception.
+            }
+            sink.reject(new ArgsError(ArgsError.Kind.INVALID_VALUE, triplet.name, position, buffer.subSequence(start, end).toString()));
+        } else if (lazyResolution && sink instanceof ResultMap.MapSink)
+            ((ResultMap.MapSink) sink).putLazyAt(triplet.slot, triplet, buffer.subSequence(start, end).toString());
+        else triplet.resolveInto(sink, buffer, start, end);
+    }
+
+    /**
+     * Resolves an element of an expression while collecting errors.
+     *
+     * @return The object, or {@link #REJECTED} after reporting the error to the sink.
+     */
+    private static Object resolveOrReject(ExpressionIndex expressions, int id, int exprIdx, String value, int position, Sink sink) {
+        if (expressions.accepts(id, exprIdx, value)) try {
+            return expressions.resolve(id, exprIdx, value);
+        } catch (RuntimeException e) {
+            // Collected as the value being invalid, like the ones rejected without an exception.
+        }
+        sink.reject(new ArgsError(ArgsError.Kind.INVALID_VALUE, expressions.name(id), position, value));
+        return REJECTED;
     }
 
     /**
@@ -418,13 +988,199 @@ public class ArgsEvaler {
         VARIADIC
     }
 
-    private static class ArgsTriplet {
-        private final String name;
-        private final Class<?> clazz;
+    private static class ArgsTriplet {
+        private final String name;
+        private final Class<?> clazz;
+        private final ObjectResolver resolver;
+        private final int slot;
+
+        /**
+         * How the values are stored in a {@link ResultMap}, one of its kinds.
+         */
+        private final byte kind;
+
+        public ArgsTriplet(String name, Class<?> clazz) {
+            this(name, clazz, null, SlotLayout.NO_SLOT);
+        }
+
+        private ArgsTriplet(String name, Class<?> clazz, ObjectResolver resolver, int slot) {
+            this.name = name;
+            this.clazz = clazz;
+            this.resolver = resolver;
+            this.slot = slot;
+
+            if (resolver instanceof ObjectResolver.IntResolver && (clazz == int.class || clazz == Integer.class))
+                kind = ResultMap.INT;
+            else if (resolver instanceof ObjectResolver.LongResolver && (clazz == long.class || clazz == Long.class))
+                kind = ResultMap.LONG;
+            else if (resolver instanceof ObjectResolver.DoubleResolver && (clazz == double.class || clazz == Double.class))
+                kind = ResultMap.DOUBLE;
+            else if (resolver instanceof ObjectResolver.BooleanResolver && (clazz == boolean.class || clazz == Boolean.class))
+                kind = ResultMap.BOOLEAN;
+            else kind = ResultMap.OBJECT;
+        }
+
+        private ArgsTriplet bind(SlotLayout layout, Map<Class<?>, ObjectResolver> resolvers, Set<Class<?>> missing) {
+            ObjectResolver resolver = resolvers.get(clazz);
+            if (resolver == null) missing.add(clazz);
+            return new ArgsTriplet(name, clazz, resolver, layout.slotOf(name));
+        }
+
+        /**
+         * Resolves the value between start and end, see {@link ObjectResolver.CharSequenceResolver}.
+         */
+        private void resolveInto(Sink sink, CharSequence s, int start, int end) {
+            switch (kind) {
+                case ResultMap.INT:
+                    sink.putIntAt(slot, ((ObjectResolver.IntResolver) resolver).resolveInt(s, start, end));
+                    break;
+                case ResultMap.LONG:
+                    sink.putLongAt(slot, ((ObjectResolver.LongResolver) resolver).resolveLong(s, start, end));
+                    break;
+                case ResultMap.DOUBLE:
+                    sink.putDoubleAt(slot, ((ObjectResolver.DoubleResolver) resolver).resolveDouble(s, start, end));
+                    break;
+                case ResultMap.BOOLEAN:
+                    sink.putBooleanAt(slot, ((ObjectResolver.BooleanResolver) resolver).resolveBoolean(s, start, end));
+                    break;
+                default:
+                    sink.putAt(slot, resolver instanceof ObjectResolver.CharSequenceResolver
+                            ? ((ObjectResolver.CharSequenceResolver) resolver).resolve(clazz, s, start, end)
+                            : resolve(s.subSequence(start, end).toString()));
+            }
+        }
+
+        private boolean accepts(CharSequence s, int start, int end) {
+            return resolver instanceof ObjectResolver.CharSequenceResolver
+                    ? ((ObjectResolver.CharSequenceResolver) resolver).accepts(s, start, end)
+                    : resolver.accepts(s.subSequence(start, end).toString());
+        }
+
+        private Object resolve(String value) {
+            return resolver.objectify(clazz, value);
+        }
+    }
+
+    /**
+     * Where an evaluation writes the values it finds, by the slots of their arguments.
+     * A {@link ResultMap} is filled through one, and an {@link ArgsBinding} uses one to set the
+     * fields of an object directly. Primitive values are given unboxed.
+     */
+    abstract static class Sink {
+
+        /**
+         * Receives the errors collected by an evaluator, see {@link ArgsEvalerBuilder#setCollectingErrors(boolean)}.
+         * A sink which can't keep them throws the first one.
+         */
+        void reject(ArgsError error) {
+            throw new IllegalArgumentException(error.toString());
+        }
+
+        abstract void putAt(int slot, Object value);
+
+        abstract void putIntAt(int slot, int value);
+
+        abstract void putLongAt(int slot, long value);
+
+        abstract void putDoubleAt(int slot, double value);
+
+        abstract void putBooleanAt(int slot, boolean value);
+    }
+
+    /**
+     * The scratch space of an evaluation, reused by consecutive evaluations on the same thread.
+     */
+    private static class Scratch {
+        private ArgsCursor cursor;
+        private Tokens.Array array;
+        private LineTokens line;
+        private int[] positions;
+        private Object[] values;
+        private Matcher[] matchers;
+        private TokenScanner.Candidates candidates;
+        private ResultMap map;
+
+        private Tokens tokensOf(String[] args) {
+            return array == null ? array = new Tokens.Array(args) : array.reset(args);
+        }
+
+        private Tokens tokensOf(CharSequence line, boolean lenient) {
+            return this.line == null ? this.line = new LineTokens(line, lenient) : this.line.reset(line, lenient);
+        }
+
+        private ArgsCursor cursorOver(Tokens args) {
+            return cursor == null ? cursor = new ArgsCursor(args) : cursor.reset(args);
+        }
+
+        private int[] positions(int length) {
+            if (positions == null || positions.length < length) positions = new int[length];
+            return positions;
+        }
+
+        private Object[] values(int length) {
+            if (values == null || values.length < length) values = new Object[length];
+            return values;
+        }
+
+        /**
+         * The matchers are reset over every token, and created again only for another Pattern.
+         */
+        private Matcher[] matchers(int length) {
+            if (matchers == null || matchers.length < length) matchers = new Matcher[length];
+            return matchers;
+        }
+
+        private TokenScanner.Candidates candidates(Tokens tokens, TokenScanner scanner) {
+            if (candidates == null) candidates = new TokenScanner.Candidates();
+            scanner.scan(tokens, candidates);
+            return candidates;
+        }
+
+        private ResultMap reusableMap(SlotLayout layout) {
+            if (map == null) map = new ResultMap(layout);
+            else map.reset(layout);
+            return map;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the object resolvers of an {@link ArgsEvaler}, and its arguments
+     * bound to them. A new snapshot is published whenever a resolver is added, and an evaluation
+     * uses the snapshot which was current when it started.
+     */
+    private static class Bindings {
+        private final Map<Class<?>, ObjectResolver> resolvers;
+        private final ArgsTriplet[] indexed;
+        private final TokenTable<ArgsTriplet> named;
+        private final TokenTable<ArgsTriplet> tagged;
+        private final ExpressionIndex expressions;
+
+        private Bindings(ArgsEvaler evaler, Map<Class<?>, ObjectResolver> resolvers) {
+            Set<Class<?>> missing = new LinkedHashSet<>();
+
+            this.resolvers = Collections.unmodifiableMap(resolvers);
+            if (evaler.listener != null) resolvers = TimedResolver.wrap(resolvers, evaler.listener);
+
+            indexed = bind(evaler.indexed, evaler.layout, resolvers, missing);
+            named = tableOf(bind(evaler.named, evaler.layout, resolvers, missing));
+            tagged = tableOf(bind(evaler.tagged, evaler.layout, resolvers, missing));
+            expressions = evaler.expressions.bind(resolvers, missing);
+
+            if (!missing.isEmpty())
+                throw new IllegalArgumentException("No Object Resolver was added for " + missing + ".");
+        }
 
-        public ArgsTriplet(String name, Class<?> clazz) {
-            this.name = name;
-            this.clazz = clazz;
+        private static ArgsTriplet[] bind(ArgsTriplet[] triplets, SlotLayout layout, Map<Class<?>, ObjectResolver> resolvers, Set<Class<?>> missing) {
+            ArgsTriplet[] bound = new ArgsTriplet[triplets.length];
+            for (int i = 0; i < triplets.length; i++)
+                bound[i] = triplets[i].bind(layout, resolvers, missing);
+            return bound;
+        }
+
+        private static TokenTable<ArgsTriplet> tableOf(ArgsTriplet[] triplets) {
+            TokenTable<ArgsTriplet> table = new TokenTable<>(triplets.length);
+            for (ArgsTriplet triplet : triplets) table.putIfAbsent(triplet.name, triplet);
+            return table;
         }
     }
 
@@ -497,8 +1253,8 @@ public class ArgsEvaler {
      */
     public static class StringPatternResolver {
 
-        private final Pattern pattern;
-        private final Class<?> clazz;
+        final Pattern pattern;
+        final Class<?> clazz;
 
         public StringPatternResolver(Pattern pattern, Class<?> clazz) {
             this.pattern = pattern;
@@ -536,20 +1292,379 @@ public class ArgsEvaler {
      */
     public static class ResultMap extends AbstractMap<String, Object> {
 
-        private final HashMap<String, Object> map;
+        private static final byte ABSENT = 0;
+        private static final byte OBJECT = 1;
+        private static final byte INT = 2;
+        private static final byte LONG = 3;
+        private static final byte DOUBLE = 4;
+        private static final byte BOOLEAN = 5;
+        private static final byte LAZY = 6;
+
+        private SlotLayout layout;
+        private Object[] values;
+
+        /**
+         * The values of int, long, double and boolean arguments are stored here unboxed.
+         */
+        private long[] primitives;
+        private byte[] kinds;
+        private int size;
+
+        /**
+         * The values put under keys which aren't argument names of the evaluator.
+         */
+        private HashMap<String, Object> others;
+
+        /**
+         * Null until an error is collected.
+         */
+        private ArrayList<ArgsError> errors;
+
+        /**
+         * Scratch space for the evaluator, kept so that reusing a map doesn't allocate.
+         */
+        private Scratch scratch;
+
+        private final MapSink sink = new MapSink();
+
+        private ResultMap(SlotLayout layout) {
+            reset(layout);
+        }
+
+        /**
+         * Clears this map, and lays it out for the given evaluator if it's not already.
+         */
+        private void reset(SlotLayout layout) {
+            if (this.layout == layout) {
+                clear();
+                return;
+            }
+            this.layout = layout;
+            values = new Object[layout.size()];
+            primitives = new long[layout.size()];
+            kinds = new byte[layout.size()];
+            size = 0;
+            others = null;
+            errors = null;
+        }
+
+        private Scratch scratch() {
+            return scratch == null ? scratch = new Scratch() : scratch;
+        }
+
+        private Object putAt(int slot, Object value) {
+            Object old = valueAt(slot);
+            values[slot] = value;
+            mark(slot, OBJECT);
+            return old;
+        }
+
+        private void putIntAt(int slot, int value) {
+            primitives[slot] = value;
+            values[slot] = null;
+            mark(slot, INT);
+        }
+
+        private void putLongAt(int slot, long value) {
+            primitives[slot] = value;
+            values[slot] = null;
+            mark(slot, LONG);
+        }
+
+        private void putDoubleAt(int slot, double value) {
+            primitives[slot] = Double.doubleToRawLongBits(value);
+            values[slot] = null;
+            mark(slot, DOUBLE);
+        }
+
+        private void putBooleanAt(int slot, boolean value) {
+            primitives[slot] = value ? 1 : 0;
+            values[slot] = null;
+            mark(slot, BOOLEAN);
+        }
+
+        private void putLazyAt(int slot, ArgsTriplet triplet, String token) {
+            values[slot] = new LazyValue(triplet, token);
+            mark(slot, LAZY);
+        }
+
+        private void mark(int slot, byte kind) {
+            if (kinds[slot] == ABSENT) size++;
+            kinds[slot] = kind;
+        }
+
+        private Object removeAt(int slot) {
+            Object old = valueAt(slot);
+            values[slot] = null;
+            if (kinds[slot] != ABSENT) {
+                kinds[slot] = ABSENT;
+                size--;
+            }
+            return old;
+        }
+
+        /**
+         * @return The value at the slot, boxing it if it's stored unboxed.
+         */
+        private Object valueAt(int slot) {
+            switch (kinds[slot]) {
+                case INT:
+                    return (int) primitives[slot];
+                case LONG:
+                    return primitives[slot];
+                case DOUBLE:
+                    return Double.longBitsToDouble(primitives[slot]);
+                case BOOLEAN:
+                    return primitives[slot] != 0;
+                case LAZY:
+                    return ((LazyValue) values[slot]).get();
+                default:
+                    return values[slot];
+            }
+        }
+
+        private final class MapSink extends Sink {
+
+            @Override
+            void putAt(int slot, Object value) {
+                ResultMap.this.putAt(slot, value);
+            }
+
+            @Override
+            void putIntAt(int slot, int value) {
+                ResultMap.this.putIntAt(slot, value);
+            }
+
+            @Override
+            void putLongAt(int slot, long value) {
+                ResultMap.this.putLongAt(slot, value);
+            }
+
+            @Override
+            void putDoubleAt(int slot, double value) {
+                ResultMap.this.putDoubleAt(slot, value);
+            }
+
+            @Override
+            void putBooleanAt(int slot, boolean value) {
+                ResultMap.this.putBooleanAt(slot, value);
+            }
+
+            @Override
+            void reject(ArgsError error) {
+                if (errors == null) errors = new ArrayList<>();
+                errors.add(error);
+            }
+
+            private void putLazyAt(int slot, ArgsTriplet triplet, String token) {
+                ResultMap.this.putLazyAt(slot, triplet, token);
+            }
+        }
+
+        /**
+         * A value which is resolved when it's first read, see {@link ArgsEvalerBuilder#setLazyResolution(boolean)}.
+         * It's resolved at most once even if many threads read it together. If the resolver fails,
+         * the exception is thrown to the reader, and the next read tries again.
+         */
+        private static final class LazyValue {
+            private static final Object UNRESOLVED = new Object();
 
-        private ResultMap() {
-            map = new HashMap<>();
+            private final ArgsTriplet triplet;
+            private final String token;
+            private volatile Object value = UNRESOLVED;
+
+            private LazyValue(ArgsTriplet triplet, String token) {
+                this.triplet = triplet;
+                this.token = token;
+            }
+
+            private Object get() {
+                Object value = this.value;
+                if (value == UNRESOLVED)
+                    synchronized (this) {
+                        value = this.value;
+                        if (value == UNRESOLVED) this.value = value = triplet.resolve(token);
+                    }
+                return value;
+            }
         }
 
         @Override
         public Object put(String key, Object value) {
-            return map.put(key, value);
+            int slot = layout.slotOf(key);
+            if (slot != SlotLayout.NO_SLOT) return putAt(slot, value);
+            if (others == null) others = new HashMap<>();
+            return others.put(key, value);
         }
 
         @Override
         public Object get(Object key) {
-            return map.get(key);
+            int slot = layout.slotOf(key);
+            if (slot != SlotLayout.NO_SLOT) return valueAt(slot);
+            return others == null ? null : others.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int slot = layout.slotOf(key);
+            if (slot != SlotLayout.NO_SLOT) return kinds[slot] != ABSENT;
+            return others != null && others.containsKey(key);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int slot = layout.slotOf(key);
+            if (slot != SlotLayout.NO_SLOT) return removeAt(slot);
+            return others == null ? null : others.remove(key);
+        }
+
+        @Override
+        public int size() {
+            return size + (others == null ? 0 : others.size());
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, null);
+            Arrays.fill(kinds, ABSENT);
+            size = 0;
+            if (others != null) others.clear();
+            if (errors != null) errors.clear();
+        }
+
+        /**
+         * @return The errors collected while evaluating, in the order they were found. It's always
+         * empty unless the evaluator collects errors, see {@link ArgsEvalerBuilder#setCollectingErrors(boolean)}.
+         */
+        public List<ArgsError> errors() {
+            return errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * @return true if any error was collected while evaluating.
+         * @see ResultMap#errors()
+         */
+        public boolean hasErrors() {
+            return errors != null && !errors.isEmpty();
+        }
+
+        /**
+         * Gets a value using the slot of its argument, without hashing its name.
+         *
+         * @param slot The slot, as given by {@link ArgsEvaler#slotOf(String)} of the evaluator which filled this map.
+         * @return The value, or null if it wasn't evaluated.
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public Object getAt(int slot) {
+            return valueAt(slot);
+        }
+
+        /**
+         * @see ResultMap#getAt(int)
+         */
+        @SuppressWarnings("unchecked")
+        public <ReType> ReType getTAt(int slot) {
+            return (ReType) valueAt(slot);
+        }
+
+        /**
+         * @param slot The slot, as given by {@link ArgsEvaler#slotOf(String)} of the evaluator which filled this map.
+         * @return true if the argument at the given slot was evaluated.
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public boolean isPresentAt(int slot) {
+            return kinds[slot] != ABSENT;
+        }
+
+        /**
+         * Gets an int value without boxing it, if it was resolved by an {@link ObjectResolver.IntResolver}.
+         * Other {@link Number}s are converted.
+         *
+         * @param name The name of the argument.
+         * @param def  The default value, used if the argument wasn't evaluated or is null.
+         * @return The value, or the default value.
+         */
+        public int getInt(String name, int def) {
+            int slot = layout.slotOf(name);
+            return slot != SlotLayout.NO_SLOT ? getIntAt(slot, def) : ((Number) get(name, (Object) def)).intValue();
+        }
+
+        /**
+         * @see ResultMap#getInt(String, int)
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public int getIntAt(int slot, int def) {
+            if (kinds[slot] == INT) return (int) primitives[slot];
+            Object o = valueAt(slot);
+            return o != null ? ((Number) o).intValue() : def;
+        }
+
+        /**
+         * Gets a long value without boxing it, if it was resolved by an {@link ObjectResolver.LongResolver}
+         * or an {@link ObjectResolver.IntResolver}. Other {@link Number}s are converted.
+         *
+         * @param name The name of the argument.
+         * @param def  The default value, used if the argument wasn't evaluated or is null.
+         * @return The value, or the default value.
+         */
+        public long getLong(String name, long def) {
+            int slot = layout.slotOf(name);
+            return slot != SlotLayout.NO_SLOT ? getLongAt(slot, def) : ((Number) get(name, (Object) def)).longValue();
+        }
+
+        /**
+         * @see ResultMap#getLong(String, long)
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public long getLongAt(int slot, long def) {
+            if (kinds[slot] == LONG || kinds[slot] == INT) return primitives[slot];
+            Object o = valueAt(slot);
+            return o != null ? ((Number) o).longValue() : def;
+        }
+
+        /**
+         * Gets a double value without boxing it, if it was resolved by an {@link ObjectResolver.DoubleResolver}.
+         * Other {@link Number}s are converted.
+         *
+         * @param name The name of the argument.
+         * @param def  The default value, used if the argument wasn't evaluated or is null.
+         * @return The value, or the default value.
+         */
+        public double getDouble(String name, double def) {
+            int slot = layout.slotOf(name);
+            return slot != SlotLayout.NO_SLOT ? getDoubleAt(slot, def) : ((Number) get(name, (Object) def)).doubleValue();
+        }
+
+        /**
+         * @see ResultMap#getDouble(String, double)
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public double getDoubleAt(int slot, double def) {
+            if (kinds[slot] == DOUBLE) return Double.longBitsToDouble(primitives[slot]);
+            Object o = valueAt(slot);
+            return o != null ? ((Number) o).doubleValue() : def;
+        }
+
+        /**
+         * Gets a boolean value without boxing it, if it was resolved by an {@link ObjectResolver.BooleanResolver}.
+         *
+         * @param name The name of the argument.
+         * @param def  The default value, used if the argument wasn't evaluated or is null.
+         * @return The value, or the default value.
+         */
+        public boolean getBoolean(String name, boolean def) {
+            int slot = layout.slotOf(name);
+            return slot != SlotLayout.NO_SLOT ? getBooleanAt(slot, def) : (Boolean) get(name, (Object) def);
+        }
+
+        /**
+         * @see ResultMap#getBoolean(String, boolean)
+         * @see ArgsEvaler#slotOf(String)
+         */
+        public boolean getBooleanAt(int slot, boolean def) {
+            if (kinds[slot] == BOOLEAN) return primitives[slot] != 0;
+            Object o = valueAt(slot);
+            return o != null ? (Boolean) o : def;
         }
 
         /**
@@ -704,7 +1819,8 @@ public class ArgsEvaler {
          * @see ArgumentTypes#VARIADIC
          */
         public String[] getVariadic() {
-            return getT(VARIADIC_KEY);
+            Object variadic = get(VARIADIC_KEY);
+            return variadic instanceof TokenBuffer.View ? ((TokenBuffer.View) variadic).strings() : (String[]) variadic;
         }
 
         /**
@@ -713,7 +1829,20 @@ public class ArgsEvaler {
          * @see ResultMap#getVariadic()
          */
         public Optional<String[]> getVariadicOpt() {
-            return getOptT(VARIADIC_KEY);
+            return Optional.ofNullable(getVariadic());
+        }
+
+        /**
+         * To get the Variadic Arguments without copying them, if enabled. When a {@link TokenBuffer}
+         * was evaluated, it's a view over it, otherwise a list over the array of strings.
+         *
+         * @return the variadic arguments.
+         * @see ResultMap#getVariadic()
+         */
+        public List<CharSequence> getVariadicTokens() {
+            Object variadic = get(VARIADIC_KEY);
+            if (variadic == null || variadic instanceof TokenBuffer.View) return (TokenBuffer.View) variadic;
+            return Collections.unmodifiableList(Arrays.<CharSequence>asList((String[]) variadic));
         }
 
         /**
@@ -724,7 +1853,7 @@ public class ArgsEvaler {
          * @param thenRunThis The call back.
          */
         public void ifPresent(String name, Consumer<Object> thenRunThis) {
-            if (map.containsKey(name))
+            if (containsKey(name))
                 thenRunThis.accept(get(name));
         }
 
@@ -742,16 +1871,107 @@ public class ArgsEvaler {
          * @param elseRunThis The failure call back.
          */
         public void ifPresent(String name, Consumer<Object> thenRunThis, Runnable elseRunThis) {
-            if (map.containsKey(name))
+            if (containsKey(name))
                 thenRunThis.accept(get(name));
             else elseRunThis.run();
         }
 
         @Override
         public Set<Entry<String, Object>> entrySet() {
-            return map.entrySet();
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return ResultMap.this.size();
+                }
+            };
+        }
+
+        /**
+         * Iterates over the evaluated slots in order, and then over the other entries.
+         */
+        private class EntryIterator implements Iterator<Entry<String, Object>> {
+            private int nextSlot = seek(0);
+            private int lastSlot = SlotLayout.NO_SLOT;
+            private Iterator<Entry<String, Object>> othersIterator;
+
+            private int seek(int slot) {
+                while (slot < kinds.length && kinds[slot] == ABSENT) slot++;
+                return slot;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (nextSlot < kinds.length) return true;
+                if (othersIterator == null && others != null) othersIterator = others.entrySet().iterator();
+                return othersIterator != null && othersIterator.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (nextSlot < kinds.length) {
+                    lastSlot = nextSlot;
+                    nextSlot = seek(nextSlot + 1);
+                    return new SlotEntry(lastSlot);
+                }
+                lastSlot = SlotLayout.NO_SLOT;
+                return othersIterator.next();
+            }
+
+            @Override
+            public void remove() {
+                if (lastSlot != SlotLayout.NO_SLOT) {
+                    removeAt(lastSlot);
+                    lastSlot = SlotLayout.NO_SLOT;
+                } else if (othersIterator != null) othersIterator.remove();
+                else throw new IllegalStateException();
+            }
         }
 
+        private class SlotEntry implements Entry<String, Object> {
+            private final int slot;
+
+            private SlotEntry(int slot) {
+                this.slot = slot;
+            }
+
+            @Override
+            public String getKey() {
+                return layout.name(slot);
+            }
+
+            @Override
+            public Object getValue() {
+                return valueAt(slot);
+            }
+
+            @Override
+            public Object setValue(Object value) {
+                return putAt(slot, value);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Entry)) return false;
+                Entry<?, ?> e = (Entry<?, ?>) o;
+                return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+            }
+
+            @Override
+            public String toString() {
+                return getKey() + "=" + getValue();
+            }
+        }
     }
 
     /**
@@ -774,9 +1994,14 @@ public class ArgsEvaler {
         private boolean requireAllIndexedArgsToBeFulfilled = false;
         private boolean hasVariadicEnding = false;
         private boolean mixingEachTypeIsAllowed = true;
+        private boolean lazyResolution = false;
+        private boolean collectingErrors = false;
 
         private String nameEquatorSyllable = "=";
 
+        private String argFilePrefix = null;
+        private long argFileMappingThreshold = 1 << 20;
+
         private final List<ArgsTriplet> indexed = new ArrayList<>();
         private final List<ArgsTriplet> named = new ArrayList<>();
         private final List<ArgsTriplet> tagged = new ArrayList<>();
@@ -785,6 +2010,8 @@ public class ArgsEvaler {
 
         private final HashMap<Class<?>, ObjectResolver> objectResolvers = new HashMap<>();
 
+        private EvaluationListener evaluationListener = null;
+
         /**
          * Define a new execution order of evaluating of the various types of arguments.
          * Note, that Indexed and Variadic always lie at the end.
@@ -854,6 +2081,99 @@ public class ArgsEvaler {
             return this;
         }
 
+        /**
+         * Sets the evaluator to resolve the values of Indexed, Named and Tagged Arguments only when
+         * they're read from the {@link ResultMap}, rather than while evaluating.
+         * <p>
+         * It's useful when the object resolvers are costly and only a few values are read.
+         * A value is resolved once, and an exception thrown by its resolver is thrown when it's read.
+         * Chained and Expression Arguments are always resolved while evaluating, since they're
+         * needed to match the arguments.
+         * <p>
+         * The default value is false.
+         *
+         * @param lazyResolution Should the values be resolved when they're first read?
+         * @return this, for Fluent API
+         */
+        public ArgsEvalerBuilder setLazyResolution(boolean lazyResolution) {
+            this.lazyResolution = lazyResolution;
+            return this;
+        }
+
+        /**
+         * Sets the evaluator to collect the errors in the arguments into the {@link ResultMap},
+         * rather than throwing them, see {@link ResultMap#errors()}.
+         * <p>
+         * A tag without a value, too few Indexed Arguments, an unterminated quote in a command
+         * line, and a value its object resolver rejects or fails to resolve are each collected as an
+         * {@link ArgsError}, and the evaluation goes on with the other arguments. The values are
+         * checked with {@link ObjectResolver#accepts(String)} first, so the default resolvers
+         * reject them without an exception being created, but for patterns, which are checked by
+         * compiling them. Values are always resolved while evaluating, even with lazy resolution.
+         * <p>
+         * An {@link ArgsBinding} can't keep the errors, so it still throws the first one.
+         * <p>
+         * The default value is false.
+         *
+         * @param collectingErrors Should the errors be collected rather than thrown?
+         * @return this, for Fluent API
+         */
+        public ArgsEvalerBuilder setCollectingErrors(boolean collectingErrors) {
+            this.collectingErrors = collectingErrors;
+            return this;
+        }
+
+        /**
+         * Sets a listener to receive the time taken by each phase of the evaluations, the positions
+         * looked at and arguments found by it, and the time taken by the object resolvers.
+         * <p>
+         * Without a listener, which is the default, nothing is timed.
+         *
+         * @param evaluationListener The listener, or null to remove it.
+         * @return this, for Fluent API
+         * @see EvaluationStats
+         */
+        public ArgsEvalerBuilder setEvaluationListener(EvaluationListener evaluationListener) {
+            this.evaluationListener = evaluationListener;
+            return this;
+        }
+
+        /**
+         * Expands the arguments which start with the prefix, like {@code @options.txt}, into the
+         * arguments written in the file they name, before an array of arguments is evaluated.
+         * The files are split the way javac splits its argument files, and may name other ones.
+         * An argument which starts with the prefix twice is kept, with one prefix removed.
+         * <p>
+         * The default value is null, the argument files aren't expanded.
+         *
+         * @param argFilePrefix The prefix, usually "@", or null.
+         * @return this, for Fluent API
+         * @throws IllegalArgumentException If the prefix is empty.
+         */
+        public ArgsEvalerBuilder setArgFilePrefix(String argFilePrefix) {
+            if (argFilePrefix != null && argFilePrefix.isEmpty())
+                throw new IllegalArgumentException("The argument file prefix can't be empty.");
+            this.argFilePrefix = argFilePrefix;
+            return this;
+        }
+
+        /**
+         * The argument files at least this large are read through a memory mapping of them,
+         * rather than copied onto the heap first.
+         * <p>
+         * The default value is 1 MB.
+         *
+         * @param argFileMappingThreshold The size in bytes.
+         * @return this, for Fluent API
+         * @throws IllegalArgumentException If the size is negative.
+         */
+        public ArgsEvalerBuilder setArgFileMappingThreshold(long argFileMappingThreshold) {
+            if (argFileMappingThreshold < 0)
+                throw new IllegalArgumentException("The argument file mapping threshold can't be negative.");
+            this.argFileMappingThreshold = argFileMappingThreshold;
+            return this;
+        }
+
         /**
          * Changes the equation symbol as used in named arguments.
          * <p>
@@ -881,8 +2201,9 @@ public class ArgsEvaler {
          * Adds a new Indexed Argument with the given name and the given value type.
          * <p>
          * Note, if the given class is not one of the pre-defined resolvers, the one
-         * should add a new Obhect Resolver using {@link ArgsEvalerBuilder#addResolver(Class, ObjectResolver)}
-         * before creation or {@link ArgsEvaler#addResolver(Class, ObjectResolver)} after creation.
+         * should add a new Object Resolver using {@link ArgsEvalerBuilder#addResolver(Class, ObjectResolver)}
+         * before creation, else {@link ArgsEvalerBuilder#build()} fails. It can still be replaced using
+         * {@link ArgsEvaler#addResolver(Class, ObjectResolver)} after creation.
          *
          * @param name  The name of this indexed argument.
          * @param clazz The class type of this indexed argument.
@@ -943,13 +2264,17 @@ public class ArgsEvaler {
         /**
          * Add a new object resolver, it's used to simply String value to the given Object types when a enpression,
          * named, tagged or indexed argument is received.
+         * <p>
+         * To skip resolving values which occur again, wrap the resolver in a {@link CachingResolver}.
          *
          * @param clazz          The class type that this new resolver returns.
          * @param objectResolver The new resolver.
          * @return this, for Fluent API
+         * @throws IllegalArgumentException If it's a {@link CachingResolver} and the objects of the class can't be cached.
          * @see ArgsEvaler#addResolver(Class, ObjectResolver)
          */
         public ArgsEvalerBuilder addResolver(Class<?> clazz, ObjectResolver objectResolver) {
+            CachingResolver.requireCacheable(clazz, objectResolver);
             objectResolvers.put(clazz, objectResolver);
             return this;
         }
@@ -1005,23 +2330,58 @@ public class ArgsEvaler {
 
         /**
          * Creats a {@link ArgsEvaler} instance with the configured values.
+         * <p>
+         * Every argument is bound to the Object Resolver of its class type here, so this
+         * fails if there's no resolver for any of the class types used.
          *
          * @return An instance of {@link ArgsEvaler}.
+         * @throws IllegalArgumentException if an Object Resolver is missing.
          */
         public ArgsEvaler build() {
-            ArgsEvaler argsEvaler = new ArgsEvaler(
+            HashMap<Class<?>, ObjectResolver> resolvers = new HashMap<>(ObjectResolver.Default.RESOLVERS);
+            resolvers.putAll(objectResolvers);
+
+            List<String> names = new ArrayList<>();
+            for (List<ArgsTriplet> triplets : Arrays.asList(indexed, named, tagged))
+                for (ArgsTriplet triplet : triplets) names.add(triplet.name);
+            for (String[][] pair : chains) names.add(pair[0][0]);
+            for (Object[][] pair : expressions) names.add((String) pair[0][0]);
+            names.add(VARIADIC_KEY);
+            SlotLayout layout = new SlotLayout(names);
+
+            Class<?>[] valueTypes = new Class<?>[layout.size()];
+            for (List<ArgsTriplet> triplets : Arrays.asList(indexed, named, tagged))
+                for (ArgsTriplet triplet : triplets) typeSlot(valueTypes, layout.slotOf(triplet.name), triplet.clazz);
+            for (String[][] pair : chains) typeSlot(valueTypes, layout.slotOf(pair[0][0]), String[].class);
+            for (Object[][] pair : expressions) typeSlot(valueTypes, layout.slotOf(pair[0][0]), Object[].class);
+            typeSlot(valueTypes, layout.slotOf(VARIADIC_KEY), String[].class);
+
+            return new ArgsEvaler(
                     evaluationOrder.toArray(new EvaluationOrder[0]),
                     requireAllIndexedArgsToBeFulfilled,
                     hasVariadicEnding,
                     mixingEachTypeIsAllowed,
+                    lazyResolution,
+                    collectingErrors,
                     nameEquatorSyllable,
                     indexed.toArray(new ArgsTriplet[0]),
                     named.toArray(new ArgsTriplet[0]),
                     tagged.toArray(new ArgsTriplet[0]),
-                    chains.toArray(new String[0][][]),
-                    expressions.toArray(new Object[0][][]));
-            objectResolvers.forEach(argsEvaler::addResolver);
-            return argsEvaler;
+                    new ChainTrie(chains, layout),
+                    new ExpressionIndex(expressions, layout),
+                    argFilePrefix == null ? null : new ArgFiles(argFilePrefix, argFileMappingThreshold),
+                    layout,
+                    valueTypes,
+                    resolvers,
+                    evaluationListener);
+        }
+
+        /**
+         * Arguments which share a name share a slot, if their types differ, the slot can hold any Object.
+         */
+        private static void typeSlot(Class<?>[] valueTypes, int slot, Class<?> clazz) {
+            if (valueTypes[slot] == null) valueTypes[slot] = clazz;
+            else if (valueTypes[slot] != clazz) valueTypes[slot] = Object.class;
         }
     }
 }
@@ -0,0 +1,305 @@
+package in.mcxiv.args;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link ObjectResolver} which remembers the objects resolved by another one, so that a value
+ * which occurs again is not resolved again. For example, the same {@code --pattern} given again
+ * skips {@link Pattern#compile(String)}.
+ * <p>
+ * The same object is given out for every occurrence of a value, so only objects which can't be
+ * modified can be cached. {@link ArgsEvaler.ArgsEvalerBuilder#addResolver(Class, ObjectResolver)}
+ * refuses a caching resolver for a class unless it's known to be immutable (see {@link #isImmutable(Class)}),
+ * or the cached resolver is declared to produce immutable objects by implementing {@link Immutable}.
+ * <p>
+ * The cache holds the most recently used values, up to the maximum size, and a value expires
+ * after the time to live. An instance caches the objects of one class, register it for that
+ * class only (or for a primitive type and its wrapper class). The primitive resolvers, like
+ * {@link ObjectResolver.IntResolver}, can't be cached: they store their values unboxed, which is
+ * cheaper than looking them up.
+ * <p>
+ * The cache is shared by all the threads using the resolver. A value is looked up without a
+ * lock, and a hit moves it to the most recently used end only if no other thread holds the lock
+ * at the moment, so the values used under contention are evicted a little earlier than they
+ * would strictly be. A value being resolved by two threads together may be resolved twice, the
+ * lock is never held while resolving.
+ */
+public final class CachingResolver implements ObjectResolver {
+
+    private static final Set<Class<?>> IMMUTABLE = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            String.class, Pattern.class, BigInteger.class, BigDecimal.class, File.class, UUID.class,
+            boolean.class, Boolean.class, byte.class, Byte.class, char.class, Character.class,
+            short.class, Short.class, int.class, Integer.class, long.class, Long.class,
+            float.class, Float.class, double.class, Double.class)));
+
+    private final ObjectResolver resolver;
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the order of the entries, and their insertion and removal.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The least recently used entry, and the most recently used one.
+     */
+    private Entry eldest, youngest;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param resolver    The resolver whose objects are cached.
+     * @param maximumSize The number of values to remember at most.
+     */
+    public CachingResolver(ObjectResolver resolver, int maximumSize) {
+        this(resolver, maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param resolver    The resolver whose objects are cached.
+     * @param maximumSize The number of values to remember at most.
+     * @param timeToLive  How long a value is remembered after it's resolved, 0 to remember it until it's evicted.
+     * @param unit        The unit of timeToLive.
+     * @throws IllegalArgumentException If the resolver is a primitive resolver.
+     */
+    public CachingResolver(ObjectResolver resolver, int maximumSize, long timeToLive, TimeUnit unit) {
+        this.resolver = Objects.requireNonNull(resolver, "resolver");
+        if (resolver instanceof ObjectResolver.IntResolver || resolver instanceof ObjectResolver.LongResolver ||
+            resolver instanceof ObjectResolver.DoubleResolver || resolver instanceof ObjectResolver.BooleanResolver)
+            throw new IllegalArgumentException("A primitive resolver can't be cached, its values are resolved without boxing them.");
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("The maximum size must be positive, but was " + maximumSize + ".");
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("The time to live can't be negative, but was " + timeToLive + ".");
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Object apply(Class objectClass, String s) {
+        long now = timeToLiveNanos == 0 ? 0 : System.nanoTime();
+
+        Entry entry = entries.get(s);
+        if (entry != null) {
+            if (timeToLiveNanos == 0 || now - entry.expiresAt < 0) {
+                hits.increment();
+                // Reading youngest without the lock only skips the lock for the value used last, it's checked again under it.
+                if (entry != youngest && lock.tryLock()) {
+                    try {
+                        if (entry.linked) moveToYoungest(entry);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return entry.value;
+            }
+            lock.lock();
+            try {
+                if (entries.remove(s, entry)) {
+                    unlink(entry);
+                    evictions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        misses.increment();
+        Object value = resolver.objectify(objectClass, s);
+
+        entry = new Entry(s, value, now + timeToLiveNanos);
+        lock.lock();
+        try {
+            Entry replaced = entries.put(s, entry);
+            if (replaced != null) unlink(replaced);
+            link(entry);
+            if (entries.size() > maximumSize) {
+                Entry evicted = eldest;
+                entries.remove(evicted.key, evicted);
+                unlink(evicted);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return value;
+    }
+
+    private void link(Entry entry) {
+        entry.older = youngest;
+        if (youngest == null) eldest = entry;
+        else youngest.younger = entry;
+        youngest = entry;
+        entry.linked = true;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.older == null) eldest = entry.younger;
+        else entry.older.younger = entry.younger;
+        if (entry.younger == null) youngest = entry.older;
+        else entry.younger.older = entry.older;
+        entry.older = entry.younger = null;
+        entry.linked = false;
+    }
+
+    private void moveToYoungest(Entry entry) {
+        if (entry == youngest) return;
+        unlink(entry);
+        link(entry);
+    }
+
+    /**
+     * A value is checked by the cached resolver, even if its object is remembered.
+     */
+    @Override
+    public boolean accepts(String s) {
+        return resolver.accepts(s);
+    }
+
+    /**
+     * @return The resolver whose objects are cached.
+     */
+    public ObjectResolver resolver() {
+        return resolver;
+    }
+
+    /**
+     * @return The number of values currently remembered.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets all the values, the statistics are kept.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            for (Entry entry = eldest; entry != null; entry = entry.younger) entry.linked = false;
+            eldest = youngest = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The statistics of this cache until now.
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * @return true if the objects of the given class are known to be immutable, and so can be cached.
+     */
+    public static boolean isImmutable(Class<?> clazz) {
+        return IMMUTABLE.contains(clazz) || clazz.isEnum();
+    }
+
+    /**
+     * Throws if the given resolver is a caching resolver which can't cache the objects of the given class.
+     */
+    static void requireCacheable(Class<?> clazz, ObjectResolver resolver) {
+        if (!(resolver instanceof CachingResolver)) return;
+        if (isImmutable(clazz) || ((CachingResolver) resolver).resolver instanceof Immutable) return;
+        throw new IllegalArgumentException("The objects of " + clazz + " are not known to be immutable, so they can't be cached. " +
+                                           "Implement CachingResolver.Immutable in the cached resolver if they are.");
+    }
+
+    /**
+     * A remembered value, and its neighbours in the order of use, which are guarded by the lock.
+     */
+    private static final class Entry {
+        private final String key;
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry older, younger;
+        private boolean linked;
+
+        private Entry(String key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Declares that an {@link ObjectResolver} only resolves objects which can't be modified,
+     * so that a {@link CachingResolver} may give out the same object more than once.
+     */
+    public interface Immutable extends ObjectResolver {
+    }
+
+    /**
+     * The hits, misses and evictions of a {@link CachingResolver}.
+     * Values which expired are counted as evictions.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+
+        public long requests() {
+            return hits + misses;
+        }
+
+        /**
+         * @return The fraction of the requests which were hits, or 1 if there were no requests.
+         */
+        public double hitRate() {
+            long requests = requests();
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+        }
+    }
+}
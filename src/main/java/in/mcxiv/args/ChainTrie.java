@@ -0,0 +1,140 @@
+package in.mcxiv.args;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The Chain Arguments (and Word Arguments) of an {@link ArgsEvaler}, compiled into a token trie.
+ * <p>
+ * Matching a position walks down the trie once instead of comparing every registered chain.
+ * Like before, if more than one chain matches at a position, the one registered first wins.
+ * Every node remembers the earliest registered chain ending in its subtree, so the walk stops
+ * as soon as nothing deeper can beat the best match found so far.
+ * <p>
+ * Once built, the children of every node are frozen into a {@link TokenTable}, so that
+ * tokens are matched without being turned into Strings.
+ */
+final class ChainTrie {
+
+    static final int NO_MATCH = -1;
+
+    private final Node root = new Node();
+
+    private final String[] names;
+    private final String[][] chains;
+    private final int[] slots;
+    private final int longest;
+
+    ChainTrie(List<String[][]> pairs, SlotLayout layout) {
+        names = new String[pairs.size()];
+        chains = new String[pairs.size()][];
+        slots = new int[pairs.size()];
+        int longest = 0;
+
+        for (int id = 0; id < chains.length; id++) {
+            String[][] pair = pairs.get(id);
+            names[id] = pair[0][0];
+            chains[id] = pair[1];
+            slots[id] = layout.slotOf(names[id]);
+            longest = Math.max(longest, chains[id].length);
+
+            Node node = root;
+            for (String word : chains[id]) {
+                node.earliestBelow = Math.min(node.earliestBelow, id);
+                node = node.building.computeIfAbsent(word, w -> new Node());
+            }
+            node.earliestBelow = Math.min(node.earliestBelow, id);
+            if (node.chain == NO_MATCH) node.chain = id;
+        }
+
+        root.freeze();
+        this.longest = longest;
+    }
+
+    /**
+     * @return The length of the longest chain.
+     */
+    int longest() {
+        return longest;
+    }
+
+    /**
+     * Adds the first words of the chains to the collection.
+     */
+    void firstWords(Collection<String> out) {
+        root.children.keysStartingWith("", out);
+    }
+
+    /**
+     * Adds the words which can follow the tokens between from and to in a chain, and which start
+     * with the prefix, to the collection. If from is to, those are the first words of the chains.
+     */
+    void wordsAfter(Tokens tokens, int from, int to, String prefix, Collection<String> out) {
+        Node node = root;
+        for (int idx = from; idx < to && node != null; idx++)
+            node = tokens.lookup(node.children, idx);
+        if (node != null) node.children.keysStartingWith(prefix, out);
+    }
+
+    /**
+     * @param args    The arguments being evaluated.
+     * @param argsIdx The unconsumed argument to start matching at.
+     * @return The id of the earliest registered chain matching at argsIdx, or {@link #NO_MATCH}.
+     */
+    int match(ArgsCursor args, int argsIdx) {
+        int best = NO_MATCH;
+        Node node = root;
+
+        for (int valueIdx = argsIdx, argsE = args.end(); valueIdx < argsE; valueIdx = args.next(valueIdx)) {
+            node = args.lookup(node.children, valueIdx);
+            if (node == null) break;
+            if (best != NO_MATCH && node.earliestBelow > best) break;
+            if (node.chain != NO_MATCH && (best == NO_MATCH || node.chain < best)) best = node.chain;
+        }
+
+        return best;
+    }
+
+    /**
+     * @return The furthest argument a match at argsIdx looks at, or {@link ArgsCursor#end()} if it
+     * runs out of arguments.
+     */
+    int reach(ArgsCursor args, int argsIdx) {
+        Node node = root;
+        int valueIdx = argsIdx;
+        for (int argsE = args.end(); valueIdx < argsE; valueIdx = args.next(valueIdx)) {
+            node = args.lookup(node.children, valueIdx);
+            if (node == null) break;
+        }
+        return valueIdx;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int slot(int id) {
+        return slots[id];
+    }
+
+    String[] chain(int id) {
+        return chains[id];
+    }
+
+    private static final class Node {
+        private HashMap<String, Node> building = new HashMap<>();
+        private TokenTable<Node> children;
+        private int chain = NO_MATCH;
+        private int earliestBelow = Integer.MAX_VALUE;
+
+        private void freeze() {
+            children = new TokenTable<>(building.size());
+            building.forEach((word, child) -> {
+                children.putIfAbsent(word, child);
+                child.freeze();
+            });
+            building = null;
+        }
+    }
+}
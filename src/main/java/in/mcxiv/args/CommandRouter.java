@@ -0,0 +1,292 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ResultMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Routes arguments to one of many {@link ArgsEvaler}s by their leading tokens, the command.
+ * <p>
+ * Commands like {@code git remote add} are kept in a token trie, so finding the command costs one
+ * table lookup per leading token, however many commands are registered. The longest registered
+ * command the arguments start with wins, and only its evaluator runs, on the arguments after the
+ * command. So a command is the default for the subcommands under it which aren't registered, and
+ * the command without any words is the default for everything.
+ * <p>
+ * Commands can be registered and removed while other threads are routing. The changes are made
+ * to a trie of entries under a lock, and the routings read an immutable snapshot of it, which
+ * is published by the first routing after a change. Only the nodes on the paths of the changed
+ * commands are built again, so registering many commands under one node costs one lookup table
+ * for them, rather than one per command. A routing uses the snapshot which was current when it started.
+ */
+public final class CommandRouter {
+
+    /**
+     * The commands as they're registered, guarded by itself.
+     */
+    private final Entry trie = new Entry();
+
+    /**
+     * The snapshot routed with, or null if a change wasn't published yet.
+     */
+    private volatile Node root = Node.EMPTY;
+
+    /**
+     * Registers a command without a handler, or replaces the one registered for the same words.
+     *
+     * @param evaluator The evaluator of the arguments after the command.
+     * @param command   The words of the command, none for the default command.
+     * @return this, for Fluent API
+     * @see CommandRouter#register(ArgsEvaler, Consumer, String...)
+     */
+    public CommandRouter register(ArgsEvaler evaluator, String... command) {
+        return register(evaluator, null, command);
+    }
+
+    /**
+     * Registers a command, or replaces the one registered for the same words.
+     * It's safe to call this while other threads are routing.
+     *
+     * @param evaluator The evaluator of the arguments after the command.
+     * @param handler   The call back receiving the evaluated arguments when the command is dispatched, or null.
+     * @param command   The words of the command, none for the default command.
+     * @return this, for Fluent API
+     */
+    public CommandRouter register(ArgsEvaler evaluator, Consumer<ResultMap> handler, String... command) {
+        Objects.requireNonNull(evaluator, "evaluator");
+        Command registered = new Command(requireWords(command), evaluator, handler);
+
+        synchronized (trie) {
+            Entry entry = trie;
+            entry.snapshot = null;
+            for (String word : registered.words) {
+                entry = entry.children.computeIfAbsent(word, w -> new Entry());
+                entry.snapshot = null;
+            }
+            entry.command = registered;
+            root = null;
+        }
+        return this;
+    }
+
+    /**
+     * Removes a command, the commands under it stay registered.
+     * It's safe to call this while other threads are routing.
+     *
+     * @param command The words of the command.
+     * @return true if the command was registered.
+     */
+    public boolean remove(String... command) {
+        String[] words = requireWords(command);
+
+        synchronized (trie) {
+            if (!trie.remove(words, 0)) return false;
+            root = null;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the command of the given arguments and evaluates the arguments after it, like
+     * {@link ArgsEvaler#evaluate(String[])} evaluates them, expanding the argument files if the
+     * evaluator does. The words of the command are matched as they're given, never expanded.
+     *
+     * @param args The arguments, starting with the command.
+     * @return The command and its evaluated arguments, or null if no command matches.
+     */
+    public Route route(String[] args) {
+        return route(new Tokens.Array(args), (evaluator, depth) -> evaluator.evaluate(args, depth));
+    }
+
+    /**
+     * Finds the command of the given command line and evaluates the arguments after it.
+     * The line is split and evaluated like {@link ArgsEvaler#evaluate(CharSequence)} does.
+     *
+     * @param line The command line, starting with the command.
+     * @return The command and its evaluated arguments, or null if no command matches.
+     * @throws IllegalArgumentException If a quote in the line is not closed, unless the evaluator
+     *                                  of the command collects errors.
+     */
+    public Route route(CharSequence line) {
+        LineTokens tokens = new LineTokens(line, true);
+        return route(tokens, (evaluator, depth) -> evaluator.evaluate(tokens, depth));
+    }
+
+    /**
+     * Routes the arguments and passes the evaluated arguments to the handler of the command.
+     *
+     * @param args The arguments, starting with the command.
+     * @return false if no command matches.
+     * @see CommandRouter#route(String[])
+     */
+    public boolean dispatch(String[] args) {
+        return dispatch(route(args));
+    }
+
+    /**
+     * Routes the command line and passes the evaluated arguments to the handler of the command.
+     *
+     * @param line The command line, starting with the command.
+     * @return false if no command matches.
+     * @see CommandRouter#route(CharSequence)
+     */
+    public boolean dispatch(CharSequence line) {
+        return dispatch(route(line));
+    }
+
+    private static boolean dispatch(Route route) {
+        if (route == null) return false;
+        route.dispatch();
+        return true;
+    }
+
+    /**
+     * @param evaluation Evaluates the arguments after the number of words of the command found.
+     */
+    private Route route(Tokens tokens, BiFunction<ArgsEvaler, Integer, ResultMap> evaluation) {
+        Node node = root;
+        if (node == null) node = publish();
+        Command command = node.command;
+        int depth = 0;
+
+        for (int idx = 0, size = tokens.size(); idx < size; ) {
+            node = tokens.lookup(node.children, idx++);
+            if (node == null) break;
+            if (node.command != null) {
+                command = node.command;
+                depth = idx;
+            }
+        }
+
+        if (command == null) return null;
+        return new Route(command, evaluation.apply(command.evaluator, depth));
+    }
+
+    /**
+     * A command found by the router, along with its evaluated arguments.
+     */
+    public static final class Route {
+        private final Command command;
+        private final ResultMap result;
+
+        private Route(Command command, ResultMap result) {
+            this.command = command;
+            this.result = result;
+        }
+
+        /**
+         * @return The words of the command.
+         */
+        public String[] command() {
+            return command.words.clone();
+        }
+
+        /**
+         * @return The evaluator of the command.
+         */
+        public ArgsEvaler evaluator() {
+            return command.evaluator;
+        }
+
+        /**
+         * @return The arguments after the command, evaluated.
+         */
+        public ResultMap result() {
+            return result;
+        }
+
+        /**
+         * Passes the evaluated arguments to the handler of the command, if it has one.
+         */
+        public void dispatch() {
+            if (command.handler != null) command.handler.accept(result);
+        }
+    }
+
+    private static final class Command {
+        private final String[] words;
+        private final ArgsEvaler evaluator;
+        private final Consumer<ResultMap> handler;
+
+        private Command(String[] words, ArgsEvaler evaluator, Consumer<ResultMap> handler) {
+            this.words = words;
+            this.evaluator = evaluator;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * @return The snapshot of the trie, building the nodes which changed since the previous one.
+     */
+    private Node publish() {
+        synchronized (trie) {
+            Node node = root;
+            if (node == null) root = node = trie.publish();
+            return node;
+        }
+    }
+
+    /**
+     * A node of the trie as it's registered, only changed under the lock of the trie.
+     */
+    private static final class Entry {
+        private final HashMap<String, Entry> children = new HashMap<>();
+        private Command command;
+
+        /**
+         * The node published for this entry, or null if it or an entry under it changed since.
+         */
+        private Node snapshot;
+
+        private Node publish() {
+            if (snapshot == null) snapshot = new Node(command, children);
+            return snapshot;
+        }
+
+        /**
+         * Removes the command at the words, and the entries left without commands under them.
+         *
+         * @return false if there's no command at the words.
+         */
+        private boolean remove(String[] words, int depth) {
+            if (depth == words.length) {
+                if (command == null) return false;
+                command = null;
+            } else {
+                Entry child = children.get(words[depth]);
+                if (child == null || !child.remove(words, depth + 1)) return false;
+                if (child.command == null && child.children.isEmpty()) children.remove(words[depth]);
+            }
+            snapshot = null;
+            return true;
+        }
+    }
+
+    /**
+     * A node of the trie as it's routed, it's never modified once created.
+     */
+    private static final class Node {
+        private static final Node EMPTY = new Node(null, Collections.emptyMap());
+
+        private final Command command;
+        private final TokenTable<Node> children;
+
+        private Node(Command command, Map<String, Entry> entries) {
+            this.command = command;
+            this.children = new TokenTable<>(entries.size());
+            entries.forEach((word, entry) -> children.putIfAbsent(word, entry.publish()));
+        }
+    }
+
+    private static String[] requireWords(String[] command) {
+        Objects.requireNonNull(command, "command");
+        String[] words = command.clone();
+        for (String word : words) Objects.requireNonNull(word, "A word of the command is null.");
+        return words;
+    }
+}
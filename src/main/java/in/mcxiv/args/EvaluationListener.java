@@ -0,0 +1,44 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ArgumentTypes;
+
+/**
+ * Receives the timings of the evaluations of an {@link ArgsEvaler}, to find out where the time goes.
+ * <p>
+ * A listener is set with {@link ArgsEvaler.ArgsEvalerBuilder#setEvaluationListener(EvaluationListener)}.
+ * It's called on the evaluating thread, so it should be quick and it must be thread safe if the
+ * evaluator is used by many threads. {@link EvaluationStats} is a ready made listener which keeps
+ * counters and histograms.
+ * <p>
+ * An evaluator without a listener doesn't read the clock at all.
+ */
+public interface EvaluationListener {
+
+    /**
+     * Called after each phase of an evaluation.
+     *
+     * @param type     The kind of arguments evaluated in the phase, Word Arguments are reported as {@link ArgumentTypes#CHAINED}.
+     * @param nanos    The time taken by the phase, including the resolvers called during it.
+     * @param attempts The number of positions at which an argument was looked for.
+     * @param hits     The number of arguments found.
+     */
+    default void phaseEvaluated(ArgumentTypes type, long nanos, int attempts, int hits) {
+    }
+
+    /**
+     * Called after an object resolver was called, even if it failed.
+     *
+     * @param clazz The class the resolver was added for.
+     * @param nanos The time taken by the resolver.
+     */
+    default void resolved(Class<?> clazz, long nanos) {
+    }
+
+    /**
+     * Called after an evaluation completed.
+     *
+     * @param nanos The time taken by the whole evaluation.
+     */
+    default void evaluated(long nanos) {
+    }
+}
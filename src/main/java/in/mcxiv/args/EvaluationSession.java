@@ -0,0 +1,109 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ResultMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Evaluates a command line again and again as it's edited, like in an interactive shell which
+ * validates the input and suggests completions on every key stroke. Created by {@link ArgsEvaler#session()}.
+ * <p>
+ * Only the tokens from the first edited one on are split again. The matches of the previous
+ * evaluation which didn't look at those tokens are kept, with their values, and every phase
+ * resumes after the ones it kept, so object resolvers aren't called again for them. Indexed and
+ * Variadic Arguments are evaluated again every time, since they depend on everything that's left.
+ * Values are always resolved while evaluating, even if the evaluator resolves them lazily.
+ * <p>
+ * A session keeps state between the calls, so it must be used by one thread at a time.
+ */
+public final class EvaluationSession {
+
+    private final ArgsEvaler evaler;
+    private final EvaluationTrace trace = new EvaluationTrace();
+
+    private String line;
+    private LineTokens tokens;
+    private ResultMap map;
+    private boolean evaluated;
+
+    EvaluationSession(ArgsEvaler evaler) {
+        this.evaler = evaler;
+    }
+
+    /**
+     * Evaluates the command line as it is now.
+     * <p>
+     * The same map is returned every time, and it's changed by the next call.
+     *
+     * @param line The command line, like {@link ArgsEvaler#evaluate(CharSequence)} takes.
+     * @return The Map object mapping the argument names to their values.
+     * @throws IllegalArgumentException If a quote in the line is not closed, unless errors are collected.
+     */
+    public ResultMap update(CharSequence line) {
+        String text = line.toString();
+        int size = tokens == null ? 0 : tokens.size();
+
+        int edited;
+        try {
+            if (tokens == null) {
+                tokens = new LineTokens(text, evaler.collectsErrors());
+                edited = 0;
+            } else edited = tokens.update(text);
+        } catch (IllegalArgumentException e) {
+            tokens = null;
+            evaluated = false;
+            trace.invalidate();
+            throw e;
+        }
+        this.line = text;
+
+        if (evaluated && edited == size && edited == tokens.size())
+            return map;
+
+        evaluated = false;
+        trace.edited(edited);
+        try {
+            map = evaler.evaluate(tokens, map, trace);
+        } catch (RuntimeException e) {
+            trace.invalidate();
+            throw e;
+        }
+        trace.completed();
+        evaluated = true;
+        return map;
+    }
+
+    /**
+     * @return The map returned by the last successful {@link #update(CharSequence)}, or null.
+     */
+    public ResultMap result() {
+        return evaluated ? map : null;
+    }
+
+    /**
+     * Suggests the completions of the token at the end of the command line: the one being typed,
+     * or the next one if the line ends with a space.
+     * <p>
+     * The completions are the tags, the names followed by the equator, and the words and literals
+     * which can follow the tokens before in a chain or an expression. Nothing is suggested for the
+     * value of a tag.
+     *
+     * @return The completions which start with what's typed of the token, sorted.
+     * @throws IllegalStateException If no line was given yet.
+     */
+    public List<String> complete() {
+        if (line == null || tokens == null)
+            throw new IllegalStateException("There's no line to complete, call update first.");
+
+        int count = tokens.size();
+        String prefix = "";
+        if (count > 0 && !line.isEmpty() && !Character.isWhitespace(line.charAt(line.length() - 1)))
+            prefix = tokens.string(--count);
+
+        TreeSet<String> completions = new TreeSet<>();
+        evaler.complete(tokens, count, prefix, completions);
+        return new ArrayList<>(completions);
+    }
+}
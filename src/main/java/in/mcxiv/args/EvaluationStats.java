@@ -0,0 +1,261 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.ArgumentTypes;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EvaluationListener} which counts the evaluations, phases and resolver calls,
+ * and keeps a histogram of their times. It can be shared by many evaluators and threads.
+ * <p>
+ * The histograms have a bucket for every power of two nanoseconds, so a percentile is known
+ * to within a factor of two. Use {@link #snapshot()} to read the statistics.
+ */
+public final class EvaluationStats implements EvaluationListener {
+
+    private final Timer evaluations = new Timer();
+    private final EnumMap<ArgumentTypes, Phase> phases = new EnumMap<>(ArgumentTypes.class);
+    private final ConcurrentHashMap<Class<?>, Timer> resolvers = new ConcurrentHashMap<>();
+
+    public EvaluationStats() {
+        for (ArgumentTypes type : ArgumentTypes.values())
+            phases.put(type, new Phase());
+    }
+
+    @Override
+    public void phaseEvaluated(ArgumentTypes type, long nanos, int attempts, int hits) {
+        Phase phase = phases.get(type);
+        phase.record(nanos);
+        phase.attempts.add(attempts);
+        phase.hits.add(hits);
+    }
+
+    @Override
+    public void resolved(Class<?> clazz, long nanos) {
+        resolvers.computeIfAbsent(clazz, c -> new Timer()).record(nanos);
+    }
+
+    @Override
+    public void evaluated(long nanos) {
+        evaluations.record(nanos);
+    }
+
+    /**
+     * @return The statistics until now. They're read one counter at a time while others may be
+     * updating them, so they may be off by the evaluations in progress.
+     */
+    public Snapshot snapshot() {
+        EnumMap<ArgumentTypes, PhaseSnapshot> phases = new EnumMap<>(ArgumentTypes.class);
+        this.phases.forEach((type, phase) -> phases.put(type, phase.snapshot()));
+        HashMap<Class<?>, TimerSnapshot> resolvers = new HashMap<>();
+        this.resolvers.forEach((clazz, timer) -> resolvers.put(clazz, timer.snapshot()));
+        return new Snapshot(evaluations.snapshot(), phases, resolvers);
+    }
+
+    /**
+     * Forgets everything recorded until now.
+     */
+    public void reset() {
+        evaluations.reset();
+        phases.values().forEach(Phase::reset);
+        resolvers.clear();
+    }
+
+    private static class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        final AtomicLongArray histogram = new AtomicLongArray(64);
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+        }
+
+        void reset() {
+            count.reset();
+            total.reset();
+            max.reset();
+            for (int i = 0; i < histogram.length(); i++) histogram.set(i, 0);
+        }
+
+        long[] histogram() {
+            long[] buckets = new long[histogram.length()];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = histogram.get(i);
+            return buckets;
+        }
+
+        TimerSnapshot snapshot() {
+            return new TimerSnapshot(count.sum(), total.sum(), max.get(), histogram());
+        }
+    }
+
+    private static final class Phase extends Timer {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder hits = new LongAdder();
+
+        @Override
+        void reset() {
+            super.reset();
+            attempts.reset();
+            hits.reset();
+        }
+
+        @Override
+        PhaseSnapshot snapshot() {
+            return new PhaseSnapshot(count.sum(), total.sum(), max.get(), histogram(), attempts.sum(), hits.sum());
+        }
+    }
+
+    /**
+     * The statistics of an {@link EvaluationStats} at some point in time.
+     */
+    public static final class Snapshot {
+        private final TimerSnapshot evaluations;
+        private final Map<ArgumentTypes, PhaseSnapshot> phases;
+        private final Map<Class<?>, TimerSnapshot> resolvers;
+
+        private Snapshot(TimerSnapshot evaluations, Map<ArgumentTypes, PhaseSnapshot> phases, Map<Class<?>, TimerSnapshot> resolvers) {
+            this.evaluations = evaluations;
+            this.phases = Collections.unmodifiableMap(phases);
+            this.resolvers = Collections.unmodifiableMap(resolvers);
+        }
+
+        /**
+         * @return The times of the whole evaluations.
+         */
+        public TimerSnapshot evaluations() {
+            return evaluations;
+        }
+
+        /**
+         * @return The times, attempts and hits of the phases evaluating the given kind of arguments.
+         */
+        public PhaseSnapshot phase(ArgumentTypes type) {
+            return phases.get(type);
+        }
+
+        public Map<ArgumentTypes, PhaseSnapshot> phases() {
+            return phases;
+        }
+
+        /**
+         * @return The times of the resolver added for the given class, or null if it was never called.
+         */
+        public TimerSnapshot resolver(Class<?> clazz) {
+            return resolvers.get(clazz);
+        }
+
+        public Map<Class<?>, TimerSnapshot> resolvers() {
+            return resolvers;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{evaluations=" + evaluations + ", phases=" + phases + ", resolvers=" + resolvers + '}';
+        }
+    }
+
+    /**
+     * The number of times something was timed, and a histogram of the times.
+     */
+    public static class TimerSnapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        private TimerSnapshot(long count, long totalNanos, long maxNanos, long[] histogram) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param quantile A quantile between 0 and 1, like 0.99 for the 99th percentile.
+         * @return An upper bound of the time within which the given fraction of the timings completed.
+         */
+        public long percentileNanos(double quantile) {
+            if (quantile < 0 || quantile > 1)
+                throw new IllegalArgumentException("The quantile must be between 0 and 1, but was " + quantile + ".");
+            long total = 0;
+            for (long bucket : histogram) total += bucket;
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(quantile * total), seen = 0;
+            for (int bucket = 0; bucket < histogram.length; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= rank && seen > 0)
+                    return bucket == 63 ? maxNanos : Math.min(maxNanos, (2L << bucket) - 1);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + (long) meanNanos() + "ns, p50=" + percentileNanos(0.5)
+                   + "ns, p99=" + percentileNanos(0.99) + "ns, max=" + maxNanos + "ns}";
+        }
+    }
+
+    /**
+     * The times of a phase, and the number of positions looked at and arguments found by it.
+     */
+    public static final class PhaseSnapshot extends TimerSnapshot {
+        private final long attempts;
+        private final long hits;
+
+        private PhaseSnapshot(long count, long totalNanos, long maxNanos, long[] histogram, long attempts, long hits) {
+            super(count, totalNanos, maxNanos, histogram);
+            this.attempts = attempts;
+            this.hits = hits;
+        }
+
+        public long attempts() {
+            return attempts;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * @return The fraction of the attempts which found an argument, or 0 if there were none.
+         */
+        public double hitRate() {
+            return attempts == 0 ? 0 : (double) hits / attempts;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString().replace("}", ", attempts=" + attempts + ", hits=" + hits + "}");
+        }
+    }
+}
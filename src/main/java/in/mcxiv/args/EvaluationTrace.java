@@ -0,0 +1,268 @@
+package in.mcxiv.args;
+
+import java.util.Arrays;
+
+/**
+ * The matches found by every phase of an evaluation, recorded so that an {@link EvaluationSession}
+ * can evaluate an edited command line again without matching its unchanged start again.
+ * <p>
+ * Every attempt to match is recorded with its position and its reach, the furthest position it
+ * looked at, and every match with the number of arguments it consumed and the values it wrote.
+ * An attempt has the same outcome as before if its reach is before the first edited token, and
+ * the earlier phases didn't change what was consumed up to its reach. So, phase by phase, the
+ * matches with only such attempts before them are replayed into the map and the cursor, and the
+ * phase resumes after the last one. The matches it forgets, and the ones it finds instead, may
+ * consume other arguments than before, so the later phases keep only the matches which reach
+ * before the first of them. A phase which steps back after a match may find them before the
+ * attempt it resumed at.
+ * <p>
+ * It's the sink of the phases it records, and passes the values and errors on to the sink of the map.
+ */
+final class EvaluationTrace extends ArgsEvaler.Sink {
+
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte ERROR = 5;
+
+    private ArgsEvaler.Sink target;
+    private Object snapshot;
+    private Phase[] phases = new Phase[0];
+
+    /**
+     * The matches reaching this position or beyond must be found again.
+     */
+    private int bound;
+
+    private Phase phase;
+
+    /**
+     * Starts a new evaluation, after the tokens from the given one on were edited.
+     */
+    void edited(int firstEditedToken) {
+        bound = Math.min(bound, firstEditedToken);
+    }
+
+    /**
+     * Forgets all the matches, like after an evaluation failed.
+     */
+    void invalidate() {
+        bound = 0;
+        for (Phase phase : phases) phase.truncate(0);
+    }
+
+    /**
+     * Called by the evaluator before the first phase.
+     *
+     * @param snapshot The resolvers the evaluator uses, the matches are forgotten if they changed.
+     */
+    void target(ArgsEvaler.Sink target, int phaseCount, Object snapshot) {
+        this.target = target;
+        if (this.snapshot != snapshot || phases.length != phaseCount) {
+            this.snapshot = snapshot;
+            phases = new Phase[phaseCount];
+            for (int i = 0; i < phaseCount; i++) phases[i] = new Phase();
+            bound = 0;
+        }
+    }
+
+    ArgsEvaler.Sink target() {
+        return target;
+    }
+
+    Object snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replays the matches of the phase which are still valid, and starts recording the new ones.
+     *
+     * @param stepsBack If the phase steps back after a match, like the expressions and the chains,
+     *                  see {@link ArgsCursor#back(int, int)}.
+     * @return The position to resume the phase at.
+     */
+    int replay(int index, ArgsCursor args, boolean stepsBack) {
+        phase = phases[index];
+
+        int stable = 0;
+        while (stable < phase.attempts && phase.attemptReaches[stable] < bound) stable++;
+        int kept = 0;
+        while (kept < phase.matches && phase.attemptEnds[kept] <= stable) kept++;
+        boolean stopped = stable == phase.attempts && phase.stopped;
+
+        for (int match = 0; match < kept; match++) {
+            for (int value = match == 0 ? 0 : phase.valueEnds[match - 1]; value < phase.valueEnds[match]; value++)
+                phase.write(value, target);
+            args.consume(phase.positions[match], phase.counts[match]);
+        }
+
+        if (stopped) return args.end();
+        // The arguments consumed by the matches forgotten here, or by the new ones, may be different.
+        for (int match = kept; match < phase.matches; match++) bound = Math.min(bound, phase.positions[match]);
+
+        phase.truncate(kept);
+        if (kept == 0) return args.first();
+        return stepsBack ? args.back(phase.positions[kept - 1], phase.counts[kept - 1] - 1) : args.seek(phase.positions[kept - 1]);
+    }
+
+    void attempted(int position, int reach) {
+        phase.attempt(position, reach);
+    }
+
+    /**
+     * Records a match found again, which may be before the first attempt that wasn't replayed if
+     * the phase steps back, so the later phases keep only the matches reaching before it.
+     */
+    void hit(int position, int count) {
+        phase.add(position, count);
+        bound = Math.min(bound, position);
+    }
+
+    void stopped() {
+        phase.stopped = true;
+    }
+
+    /**
+     * Called after an evaluation completed, all the recorded matches are valid until the next edit.
+     */
+    void completed() {
+        bound = Integer.MAX_VALUE;
+    }
+
+    @Override
+    void putAt(int slot, Object value) {
+        phase.value(slot, OBJECT, value, 0);
+        target.putAt(slot, value);
+    }
+
+    @Override
+    void putIntAt(int slot, int value) {
+        phase.value(slot, INT, null, value);
+        target.putIntAt(slot, value);
+    }
+
+    @Override
+    void putLongAt(int slot, long value) {
+        phase.value(slot, LONG, null, value);
+        target.putLongAt(slot, value);
+    }
+
+    @Override
+    void putDoubleAt(int slot, double value) {
+        phase.value(slot, DOUBLE, null, Double.doubleToRawLongBits(value));
+        target.putDoubleAt(slot, value);
+    }
+
+    @Override
+    void putBooleanAt(int slot, boolean value) {
+        phase.value(slot, BOOLEAN, null, value ? 1 : 0);
+        target.putBooleanAt(slot, value);
+    }
+
+    @Override
+    void reject(ArgsError error) {
+        phase.value(-1, ERROR, error, 0);
+        target.reject(error);
+    }
+
+    /**
+     * The attempts and matches of one phase, in the order they were made, and the values written.
+     */
+    private static final class Phase {
+        private int attempts;
+        private int[] attemptPositions = new int[8];
+        private int[] attemptReaches = new int[8];
+
+        private int matches;
+        private int[] positions = new int[8];
+        private int[] counts = new int[8];
+        private int[] attemptEnds = new int[8];
+        private int[] valueEnds = new int[8];
+
+        /**
+         * If the phase stopped at its last attempt, which failed.
+         */
+        private boolean stopped;
+
+        private int values;
+        private int[] slots = new int[8];
+        private byte[] kinds = new byte[8];
+        private Object[] objects = new Object[8];
+        private long[] primitives = new long[8];
+
+        private void attempt(int position, int reach) {
+            if (attempts == attemptPositions.length) {
+                attemptPositions = Arrays.copyOf(attemptPositions, attempts * 2);
+                attemptReaches = Arrays.copyOf(attemptReaches, attempts * 2);
+            }
+            attemptPositions[attempts] = position;
+            attemptReaches[attempts] = reach;
+            attempts++;
+        }
+
+        private void add(int position, int count) {
+            if (matches == positions.length) {
+                positions = Arrays.copyOf(positions, matches * 2);
+                counts = Arrays.copyOf(counts, matches * 2);
+                attemptEnds = Arrays.copyOf(attemptEnds, matches * 2);
+                valueEnds = Arrays.copyOf(valueEnds, matches * 2);
+            }
+            positions[matches] = position;
+            counts[matches] = count;
+            attemptEnds[matches] = attempts;
+            valueEnds[matches] = values;
+            matches++;
+        }
+
+        private void value(int slot, byte kind, Object object, long primitive) {
+            if (values == slots.length) {
+                slots = Arrays.copyOf(slots, values * 2);
+                kinds = Arrays.copyOf(kinds, values * 2);
+                objects = Arrays.copyOf(objects, values * 2);
+                primitives = Arrays.copyOf(primitives, values * 2);
+            }
+            slots[values] = slot;
+            kinds[values] = kind;
+            objects[values] = object;
+            primitives[values] = primitive;
+            values++;
+        }
+
+        private void write(int value, ArgsEvaler.Sink sink) {
+            int slot = slots[value];
+            switch (kinds[value]) {
+                case INT:
+                    sink.putIntAt(slot, (int) primitives[value]);
+                    break;
+                case LONG:
+                    sink.putLongAt(slot, primitives[value]);
+                    break;
+                case DOUBLE:
+                    sink.putDoubleAt(slot, Double.longBitsToDouble(primitives[value]));
+                    break;
+                case BOOLEAN:
+                    sink.putBooleanAt(slot, primitives[value] != 0);
+                    break;
+                case ERROR:
+                    sink.reject((ArgsError) objects[value]);
+                    break;
+                default:
+                    sink.putAt(slot, objects[value]);
+            }
+        }
+
+        /**
+         * Forgets the matches after the first kept ones, with the attempts and values after them.
+         */
+        private void truncate(int kept) {
+            int keptValues = kept == 0 ? 0 : valueEnds[kept - 1];
+            Arrays.fill(objects, keptValues, values, null);
+            values = keptValues;
+            attempts = kept == 0 ? 0 : attemptEnds[kept - 1];
+            matches = kept;
+            stopped = false;
+        }
+    }
+}
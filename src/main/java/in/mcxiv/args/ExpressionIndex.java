@@ -0,0 +1,370 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.StringPatternResolver;
+import in.mcxiv.args.ArgsEvaler.StringPredicate;
+import in.mcxiv.args.ArgsEvaler.StringPredicateResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Expression Arguments of an {@link ArgsEvaler}, compiled into a decision structure.
+ * <p>
+ * Expressions starting with a String are bucketed by that String, so at any position only
+ * the expressions which can possibly match are tried. The ones starting with anything else
+ * are tried everywhere. Candidates are still tried in their registration order, the first
+ * one to match wins.
+ * <p>
+ * For a candidate, all the String elements are compared first, and only then the Patterns
+ * and predicates run, in their order of appearance. Class elements always match. A Pattern
+ * runs only on the tokens its {@link PatternFilter} admits, with a {@link Matcher} the
+ * evaluation reuses.
+ * <p>
+ * The index is built unbound, and {@link #bind(Map, Set)} creates a copy of it where the
+ * Class and {@link StringPatternResolver} elements are bound to their object resolvers.
+ */
+final class ExpressionIndex {
+
+    static final int NO_MATCH = -1;
+
+    private static final int[] NONE = new int[0];
+
+    private static final byte LITERAL = 0;
+    private static final byte CLASS = 1;
+    private static final byte PATTERN = 2;
+    private static final byte PREDICATE = 3;
+    private static final byte PREDICATE_RESOLVER = 4;
+    private static final byte PATTERN_RESOLVER = 5;
+    private static final byte UNKNOWN = 6;
+
+    private final String[] names;
+    private final int[] slots;
+    private final Object[][] expressions;
+    private final byte[][] kinds;
+
+    /**
+     * The indices of the elements to check of every expression, sorted by the cost to check them.
+     */
+    private final int[][] checkOrder;
+
+    /**
+     * The filters of the Pattern and {@link StringPatternResolver} elements, null for the others.
+     */
+    private final PatternFilter[][] filters;
+    private final int patterns;
+
+    private final TokenTable<int[]> byLeadingLiteral;
+    private final int[] unindexed;
+    private final int longest;
+
+    private final ObjectResolver[][] resolvers;
+
+    ExpressionIndex(List<Object[][]> pairs, SlotLayout layout) {
+        names = new String[pairs.size()];
+        slots = new int[pairs.size()];
+        expressions = new Object[pairs.size()][];
+        kinds = new byte[pairs.size()][];
+        checkOrder = new int[pairs.size()][];
+        filters = new PatternFilter[pairs.size()][];
+        resolvers = null;
+
+        HashMap<String, List<Integer>> buckets = new HashMap<>();
+        List<Integer> others = new ArrayList<>();
+        int longest = 0, patterns = 0;
+
+        for (int id = 0; id < expressions.length; id++) {
+            Object[][] pair = pairs.get(id);
+            Object[] expression = pair[1];
+            names[id] = (String) pair[0][0];
+            slots[id] = layout.slotOf(names[id]);
+            expressions[id] = expression;
+            kinds[id] = new byte[expression.length];
+            longest = Math.max(longest, expression.length);
+
+            filters[id] = new PatternFilter[expression.length];
+            for (int exprIdx = 0; exprIdx < expression.length; exprIdx++) {
+                kinds[id][exprIdx] = kindOf(expression[exprIdx]);
+                if (kinds[id][exprIdx] == PATTERN)
+                    filters[id][exprIdx] = PatternFilter.of((Pattern) expression[exprIdx], patterns++);
+                else if (kinds[id][exprIdx] == PATTERN_RESOLVER)
+                    filters[id][exprIdx] = PatternFilter.of(((StringPatternResolver) expression[exprIdx]).pattern, patterns++);
+            }
+
+            int[] order = new int[expression.length];
+            int orderIdx = 0;
+            for (int exprIdx = 0; exprIdx < expression.length; exprIdx++)
+                if (kinds[id][exprIdx] == LITERAL) order[orderIdx++] = exprIdx;
+            for (int exprIdx = 0; exprIdx < expression.length; exprIdx++)
+                if (kinds[id][exprIdx] > CLASS) order[orderIdx++] = exprIdx;
+            checkOrder[id] = Arrays.copyOf(order, orderIdx);
+
+            if (kinds[id][0] == LITERAL)
+                buckets.computeIfAbsent((String) expression[0], s -> new ArrayList<>()).add(id);
+            else others.add(id);
+        }
+
+        byLeadingLiteral = new TokenTable<>(buckets.size());
+        buckets.forEach((literal, ids) -> byLeadingLiteral.putIfAbsent(literal, toArray(ids)));
+        unindexed = toArray(others);
+        this.longest = longest;
+        this.patterns = patterns;
+    }
+
+    private ExpressionIndex(ExpressionIndex index, ObjectResolver[][] resolvers) {
+        names = index.names;
+        slots = index.slots;
+        expressions = index.expressions;
+        kinds = index.kinds;
+        checkOrder = index.checkOrder;
+        filters = index.filters;
+        patterns = index.patterns;
+        byLeadingLiteral = index.byLeadingLiteral;
+        unindexed = index.unindexed;
+        longest = index.longest;
+        this.resolvers = resolvers;
+    }
+
+    /**
+     * @param resolvers The object resolvers to bind to.
+     * @param missing   The classes without an object resolver are added here.
+     * @return A copy of this index bound to the given object resolvers.
+     */
+    ExpressionIndex bind(Map<Class<?>, ObjectResolver> resolvers, Set<Class<?>> missing) {
+        ObjectResolver[][] bound = new ObjectResolver[expressions.length][];
+
+        for (int id = 0; id < expressions.length; id++) {
+            bound[id] = new ObjectResolver[expressions[id].length];
+
+            for (int exprIdx = 0; exprIdx < expressions[id].length; exprIdx++) {
+                Class<?> clazz;
+                if (kinds[id][exprIdx] == CLASS)
+                    clazz = (Class<?>) expressions[id][exprIdx];
+                else if (kinds[id][exprIdx] == PATTERN_RESOLVER)
+                    clazz = ((StringPatternResolver) expressions[id][exprIdx]).clazz;
+                else continue;
+
+                bound[id][exprIdx] = resolvers.get(clazz);
+                if (bound[id][exprIdx] == null) missing.add(clazz);
+            }
+        }
+
+        return new ExpressionIndex(this, bound);
+    }
+
+    /**
+     * @return The length of the longest expression, that is, the size needed for the scratch arrays.
+     */
+    int longest() {
+        return longest;
+    }
+
+    /**
+     * @return The number of Pattern and {@link StringPatternResolver} elements, that is, the size needed for the matchers.
+     */
+    int patterns() {
+        return patterns;
+    }
+
+    /**
+     * Finds the earliest registered expression which matches at argsIdx.
+     * <p>
+     * On a match, positions holds the index of the argument matched by each element, and values
+     * holds the values extracted by the Patterns and predicates. Literal elements are left for the
+     * caller to fill, and Class and {@link StringPatternResolver} elements for it to resolve.
+     *
+     * @param args      The arguments being evaluated.
+     * @param argsIdx   The unconsumed argument to start matching at.
+     * @param positions A scratch array, at least {@link #longest()} in size.
+     * @param values    A scratch array, at least {@link #longest()} in size.
+     * @param matchers  The matchers to reuse, at least {@link #patterns()} in size.
+     * @return The id of the matched expression, or {@link #NO_MATCH}.
+     */
+    int match(ArgsCursor args, int argsIdx, int[] positions, Object[] values, Matcher[] matchers) {
+        int[] bucket = args.lookup(byLeadingLiteral, argsIdx);
+        if (bucket == null) bucket = NONE;
+        if (bucket.length == 0 && unindexed.length == 0) return NO_MATCH;
+
+        int gathered = 0;
+
+        for (int b = 0, u = 0; b < bucket.length || u < unindexed.length; ) {
+            int id = u == unindexed.length || (b < bucket.length && bucket[b] < unindexed[u]) ? bucket[b++] : unindexed[u++];
+
+            Object[] expression = expressions[id];
+
+            for (; gathered < expression.length; gathered++) {
+                int valueIdx = gathered == 0 ? argsIdx : args.next(positions[gathered - 1]);
+                if (valueIdx == args.end()) break;
+                positions[gathered] = valueIdx;
+            }
+            if (gathered < expression.length) continue;
+
+            if (matches(id, args, positions, values, matchers))
+                return id;
+        }
+
+        return NO_MATCH;
+    }
+
+    /**
+     * Adds the Strings the expressions start with to the collection.
+     */
+    void leadingLiterals(Collection<String> out) {
+        byLeadingLiteral.keysStartingWith("", out);
+    }
+
+    /**
+     * @return true if there are expressions which don't start with a String, and may match at any argument.
+     */
+    boolean matchesAnywhere() {
+        return unindexed.length > 0;
+    }
+
+    /**
+     * @return The furthest argument a match at argsIdx may look at, or {@link ArgsCursor#end()} if
+     * it may run out of arguments.
+     */
+    int reach(ArgsCursor args, int argsIdx) {
+        if (unindexed.length == 0 && args.lookup(byLeadingLiteral, argsIdx) == null) return argsIdx;
+        return args.nth(argsIdx, longest);
+    }
+
+    private boolean matches(int id, ArgsCursor args, int[] positions, Object[] values, Matcher[] matchers) {
+        Object[] expression = expressions[id];
+        byte[] kinds = this.kinds[id];
+        PatternFilter[] filters = this.filters[id];
+
+        for (int exprIdx : checkOrder[id]) {
+
+            int argsIdx = positions[exprIdx];
+            Object expr = expression[exprIdx];
+            String args_value;
+            PatternFilter filter;
+            Matcher matcher;
+
+            switch (kinds[exprIdx]) {
+                case LITERAL:
+                    if (!args.equalTo(argsIdx, (String) expr)) return false;
+                    break;
+
+                case PATTERN:
+                case PATTERN_RESOLVER: // Resolved by the caller, like Class elements
+                    filter = filters[exprIdx];
+                    if (!filter.admits(args.buffer(argsIdx), args.start(argsIdx), args.end(argsIdx))) return false;
+                    if (!(matcher = filter.matcher(matchers, args.view(argsIdx))).matches()) return false;
+                    values[exprIdx] = matcher.groupCount() >= 1 ? matcher.group(1) : matcher.group();
+                    break;
+
+                case PREDICATE:
+                    if (!((StringPredicate) expr).test(args_value = args.string(argsIdx))) return false;
+                    values[exprIdx] = args_value;
+                    break;
+
+                case PREDICATE_RESOLVER:
+                    if (!((StringPredicateResolver) expr).test(args_value = args.string(argsIdx))) return false;
+                    values[exprIdx] = ((StringPredicateResolver) expr).apply(args_value);
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the literals which can follow the tokens between from and to in an expression, and which
+     * start with the prefix, to the collection. Only the literals among the tokens are compared,
+     * the other elements are assumed to match. If from is to, those are the leading literals.
+     */
+    void literalsAfter(Tokens tokens, int from, int to, String prefix, Collection<String> out) {
+        if (from == to) {
+            byLeadingLiteral.keysStartingWith(prefix, out);
+            return;
+        }
+
+        int[] bucket = tokens.lookup(byLeadingLiteral, from);
+        if (bucket == null) return;
+
+        int next = to - from;
+        CANDIDATES:
+        for (int id : bucket) {
+            if (expressions[id].length <= next || kinds[id][next] != LITERAL) continue;
+            for (int exprIdx = 1; exprIdx < next; exprIdx++)
+                if (kinds[id][exprIdx] == LITERAL && !tokens.equalTo(from + exprIdx, (String) expressions[id][exprIdx]))
+                    continue CANDIDATES;
+            String literal = (String) expressions[id][next];
+            if (literal.startsWith(prefix)) out.add(literal);
+        }
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int slot(int id) {
+        return slots[id];
+    }
+
+    Object[] expression(int id) {
+        return expressions[id];
+    }
+
+    boolean isLiteral(int id, int exprIdx) {
+        return kinds[id][exprIdx] == LITERAL;
+    }
+
+    boolean isClass(int id, int exprIdx) {
+        return kinds[id][exprIdx] == CLASS;
+    }
+
+    /**
+     * @return true for the Class and {@link StringPatternResolver} elements, whose values are resolved by object resolvers.
+     */
+    boolean isResolved(int id, int exprIdx) {
+        return kinds[id][exprIdx] == CLASS || kinds[id][exprIdx] == PATTERN_RESOLVER;
+    }
+
+    /**
+     * Resolves the value of a Class element, or the value extracted by a {@link StringPatternResolver},
+     * using its bound object resolver.
+     */
+    Object resolve(int id, int exprIdx, String value) {
+        return resolvers[id][exprIdx].objectify(classOf(id, exprIdx), value);
+    }
+
+    /**
+     * @see ObjectResolver#accepts(String)
+     */
+    boolean accepts(int id, int exprIdx, String value) {
+        return resolvers[id][exprIdx].accepts(value);
+    }
+
+    private Class<?> classOf(int id, int exprIdx) {
+        Object expr = expressions[id][exprIdx];
+        return kinds[id][exprIdx] == CLASS ? (Class<?>) expr : ((StringPatternResolver) expr).clazz;
+    }
+
+    private static byte kindOf(Object expr) {
+        if (expr instanceof String) return LITERAL;
+        if (expr instanceof Class) return CLASS;
+        if (expr instanceof Pattern) return PATTERN;
+        if (expr instanceof StringPredicate) return PREDICATE;
+        if (expr instanceof StringPredicateResolver) return PREDICATE_RESOLVER;
+        if (expr instanceof StringPatternResolver) return PATTERN_RESOLVER;
+        return UNKNOWN;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+        return array;
+    }
+}
@@ -0,0 +1,267 @@
+package in.mcxiv.args;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of a single command line, split the way a POSIX shell would split it.
+ * <ul>
+ *     <li>Tokens are separated by whitespace.</li>
+ *     <li>Characters within single quotes are taken literally.</li>
+ *     <li>Within double quotes, {@code \"} and {@code \\} are escapes, any other backslash is literal.</li>
+ *     <li>Outside quotes, a backslash escapes the character after it.</li>
+ *     <li>Adjacent parts are concatenated, so {@code a"b c"d} is the single token {@code ab cd},
+ *     and {@code ""} is an empty token.</li>
+ * </ul>
+ * Tokens are not copied out of the line. Only the ones which had quotes or escapes to remove
+ * from their middle are written to a side buffer, and every token is a region of either the
+ * line or the side buffer. Tokens can be reset over another line, reusing their arrays.
+ */
+final class LineTokens extends Tokens.Regions {
+
+    private CharSequence line;
+    private final StringBuilder side = new StringBuilder();
+
+    private int size;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private boolean[] inSide = new boolean[8];
+
+    /**
+     * The index in the line right after every token, where the next one may start.
+     */
+    private int[] lineEnds = new int[8];
+
+    /**
+     * If a quote which isn't closed extends to the end of the line rather than failing.
+     */
+    private boolean lenient;
+
+    /**
+     * The index of the token with a quote which isn't closed, or -1.
+     */
+    private int unterminated = -1;
+
+    LineTokens(CharSequence line) {
+        reset(line);
+    }
+
+    LineTokens(CharSequence line, boolean lenient) {
+        reset(line, lenient);
+    }
+
+    /**
+     * Splits the given line into tokens, forgetting the previous ones.
+     *
+     * @return this
+     * @throws IllegalArgumentException If a quote is not closed.
+     */
+    LineTokens reset(CharSequence line) {
+        return reset(line, false);
+    }
+
+    /**
+     * @param lenient If a quote which isn't closed should extend to the end of the line, see {@link #unterminated()}.
+     * @return this
+     * @throws IllegalArgumentException If a quote is not closed, unless it's lenient.
+     */
+    LineTokens reset(CharSequence line, boolean lenient) {
+        this.line = line;
+        this.lenient = lenient;
+        this.unterminated = -1;
+        this.side.setLength(0);
+        this.size = 0;
+        splitFrom(0);
+        return this;
+    }
+
+    /**
+     * @return The index of the last token, if it has a quote which isn't closed, else -1.
+     */
+    @Override
+    int unterminated() {
+        return unterminated;
+    }
+
+    /**
+     * @throws IllegalArgumentException If a quote is not closed, like a line which isn't split leniently.
+     */
+    void requireTerminated() {
+        if (unterminated >= 0) reset(line, false);
+    }
+
+    /**
+     * Splits the given line into tokens, keeping the tokens of the previous line which end before
+     * the first character that differs between the lines. The previous line must not have been
+     * modified since it was split.
+     *
+     * @return The index of the first token which was split again.
+     * @throws IllegalArgumentException If a quote is not closed.
+     */
+    int update(CharSequence line) {
+        CharSequence previous = this.line;
+        int common = 0, max = Math.min(line.length(), previous.length());
+        while (common < max && line.charAt(common) == previous.charAt(common)) common++;
+
+        // The character right after a kept token must be unchanged too, else the token could have grown.
+        int kept = 0;
+        while (kept < size && lineEnds[kept] < common) kept++;
+
+        int sideLength = 0;
+        for (int idx = kept - 1; idx >= 0; idx--)
+            if (inSide[idx]) {
+                sideLength = ends[idx];
+                break;
+            }
+
+        this.line = line;
+        this.side.setLength(sideLength);
+        this.size = kept;
+        if (unterminated >= kept) unterminated = -1;
+        splitFrom(kept == 0 ? 0 : lineEnds[kept - 1]);
+        return kept;
+    }
+
+    private void splitFrom(int pos) {
+        for (int length = line.length(); ; ) {
+            while (pos < length && Character.isWhitespace(line.charAt(pos))) pos++;
+            if (pos == length) break;
+            pos = tokenAt(pos, length);
+            lineEnds[size - 1] = pos;
+        }
+    }
+
+    /**
+     * Reads the token starting at pos.
+     *
+     * @return The index one past the end of the token.
+     */
+    private int tokenAt(int pos, int length) {
+        char c = line.charAt(pos);
+
+        // A token which is just one quoted part without escapes is a view too.
+        if (c == '\'' || c == '"') {
+            int close = closingQuote(c, pos + 1, length);
+            if (close >= 0 && (close + 1 == length || Character.isWhitespace(line.charAt(close + 1)))) {
+                add(pos + 1, close, false);
+                return close + 1;
+            }
+        }
+
+        int start = pos;
+        for (; pos < length; pos++) {
+            c = line.charAt(pos);
+            if (c == '\'' || c == '"' || c == '\\') break;
+            if (Character.isWhitespace(c)) break;
+        }
+        if (pos == length || Character.isWhitespace(line.charAt(pos))) {
+            add(start, pos, false);
+            return pos;
+        }
+
+        // Quotes or escapes have to be removed, so the token is written to the side buffer.
+        int sideStart = side.length();
+        side.append(line, start, pos);
+
+        while (pos < length) {
+            c = line.charAt(pos);
+
+            if (Character.isWhitespace(c)) break;
+
+            if (c == '\'') {
+                int close = indexOf('\'', pos + 1, length);
+                if (close < 0) close = unterminated('\'', pos, length);
+                side.append(line, pos + 1, close);
+                pos = Math.min(close + 1, length);
+
+            } else if (c == '"') {
+                int open = pos;
+                for (pos++; ; pos++) {
+                    if (pos == length) {
+                        unterminated('"', open, length);
+                        break;
+                    }
+                    c = line.charAt(pos);
+                    if (c == '"') {
+                        pos++;
+                        break;
+                    }
+                    if (c == '\\' && pos + 1 < length && (line.charAt(pos + 1) == '"' || line.charAt(pos + 1) == '\\'))
+                        c = line.charAt(++pos);
+                    side.append(c);
+                }
+
+            } else if (c == '\\') {
+                if (pos + 1 < length) pos++;
+                side.append(line.charAt(pos++));
+
+            } else {
+                side.append(c);
+                pos++;
+            }
+        }
+
+        add(sideStart, side.length(), true);
+        return pos;
+    }
+
+    /**
+     * @return Where the quote is closed, the end of the line.
+     * @throws IllegalArgumentException Unless it's lenient.
+     */
+    private int unterminated(char quote, int pos, int length) {
+        if (!lenient) throw new IllegalArgumentException("Unterminated " + quote + " quote at " + pos + ".");
+        unterminated = size;
+        return length;
+    }
+
+    /**
+     * @return The index of the quote closing a part without escapes, or -1.
+     */
+    private int closingQuote(char quote, int pos, int length) {
+        for (; pos < length; pos++) {
+            char c = line.charAt(pos);
+            if (c == quote) return pos;
+            if (c == '\\' && quote == '"') return -1;
+        }
+        return -1;
+    }
+
+    private int indexOf(char c, int pos, int length) {
+        for (; pos < length; pos++)
+            if (line.charAt(pos) == c) return pos;
+        return -1;
+    }
+
+    private void add(int start, int end, boolean inSide) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            this.inSide = Arrays.copyOf(this.inSide, size * 2);
+            lineEnds = Arrays.copyOf(lineEnds, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        this.inSide[size] = inSide;
+        size++;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    CharSequence buffer(int idx) {
+        return inSide[idx] ? side : line;
+    }
+
+    @Override
+    int start(int idx) {
+        return starts[idx];
+    }
+
+    @Override
+    int end(int idx) {
+        return ends[idx];
+    }
+}
@@ -0,0 +1,20 @@
+package in.mcxiv.args;
+
+import java.util.Iterator;
+
+/**
+ * Receives every Expression and Chained Argument found in a stream of tokens by
+ * {@link ArgsEvaler#scan(Iterator, MatchListener)}.
+ * <p>
+ * It's called on the scanning thread, as soon as a match is found.
+ */
+@FunctionalInterface
+public interface MatchListener {
+
+    /**
+     * @param name     The name of the expression or chain.
+     * @param position The index in the stream of the first token of the match.
+     * @param values   The objects of the expression as {@link ArgsEvaler.ResultMap} holds them, or the words of the chain.
+     */
+    void matched(String name, long position, Object[] values);
+}
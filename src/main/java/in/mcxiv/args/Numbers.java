@@ -0,0 +1,261 @@
+package in.mcxiv.args;
+
+/**
+ * Parses numbers from a region of a CharSequence, the way the parse methods of the wrapper classes
+ * parse a String, without copying the region into a String. It also checks whether a region is a
+ * number without parsing it, so that a value which isn't one is rejected without an exception.
+ * <p>
+ * Integers are always parsed here. Decimals are parsed here when the result can be computed
+ * exactly with one multiplication or division, which covers the numbers usually given as
+ * arguments, and by the wrapper classes otherwise.
+ */
+final class Numbers {
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    /**
+     * Returned by {@link #accumulate(CharSequence, int, int, long, long)} if it's not an integer in range.
+     */
+    private static final long NOT_AN_INTEGER = 1;
+
+    /**
+     * The layout of the decimals packed by {@link #decimal(CharSequence, int, int)}. The digits are
+     * fewer than 2^53 whenever they can be parsed exactly, and so are the powers of ten.
+     */
+    private static final int MAX_SIGNIFICANT_DIGITS = 16;
+    private static final int MANTISSA_BITS = 54;
+    private static final long MANTISSA_MASK = (1L << MANTISSA_BITS) - 1;
+    private static final int EXPONENT_BIAS = 32;
+    private static final long EXPONENT_MASK = 0xFF;
+    private static final long NOT_A_DECIMAL = -1;
+
+    private Numbers() {
+    }
+
+    /**
+     * Accepts what {@link Long#parseLong(String)} accepts, within the given range.
+     */
+    static boolean isInteger(CharSequence s, int start, int end, long min, long max) {
+        return accumulate(s, start, end, min, max) != NOT_AN_INTEGER;
+    }
+
+    /**
+     * Parses what {@link Long#parseLong(String)} parses, within the given range.
+     *
+     * @throws NumberFormatException If it's not an integer in range.
+     */
+    static long parseInteger(CharSequence s, int start, int end, long min, long max) {
+        long negated = accumulate(s, start, end, min, max);
+        if (negated == NOT_AN_INTEGER) throw invalid(s, start, end);
+        return s.charAt(start) == '-' ? negated : -negated;
+    }
+
+    /**
+     * @return The integer negated, since the negative range is larger, or {@link #NOT_AN_INTEGER}.
+     */
+    private static long accumulate(CharSequence s, int start, int end, long min, long max) {
+        int idx = start;
+        if (idx == end) return NOT_AN_INTEGER;
+
+        boolean negative = false;
+        char first = s.charAt(idx);
+        if (first == '-' || first == '+') {
+            if (end - idx == 1) return NOT_AN_INTEGER;
+            negative = first == '-';
+            idx++;
+        }
+
+        long limit = negative ? min : -max;
+        long limitBeforeDigit = limit / 10;
+        long result = 0;
+        for (; idx < end; idx++) {
+            int digit = Character.digit(s.charAt(idx), 10);
+            if (digit < 0 || result < limitBeforeDigit) return NOT_AN_INTEGER;
+            result *= 10;
+            if (result < limit + digit) return NOT_AN_INTEGER;
+            result -= digit;
+        }
+        return result;
+    }
+
+    /**
+     * Accepts what {@link java.math.BigInteger#BigInteger(String)} accepts: a sign and any number of digits.
+     */
+    static boolean isDigits(String s) {
+        int idx = !s.isEmpty() && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+        if (idx == s.length()) return false;
+        for (; idx < s.length(); idx++)
+            if (Character.digit(s.charAt(idx), 10) < 0) return false;
+        return true;
+    }
+
+    /**
+     * Accepts what {@link java.math.BigDecimal#BigDecimal(String)} accepts: a sign, digits with
+     * at most one point among them, and an exponent. Exponents too large for an int are accepted.
+     */
+    static boolean isDecimal(String s) {
+        int idx = !s.isEmpty() && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+        int digits = 0;
+        boolean point = false;
+        for (; idx < s.length(); idx++) {
+            char c = s.charAt(idx);
+            if (Character.isDigit(c)) digits++;
+            else if (c == '.' && !point) point = true;
+            else break;
+        }
+        if (digits == 0) return false;
+        if (idx == s.length()) return true;
+
+        if (s.charAt(idx) != 'e' && s.charAt(idx) != 'E') return false;
+        idx++;
+        if (idx < s.length() && (s.charAt(idx) == '-' || s.charAt(idx) == '+')) idx++;
+        if (idx == s.length()) return false;
+        for (; idx < s.length(); idx++)
+            if (!Character.isDigit(s.charAt(idx))) return false;
+        return true;
+    }
+
+    /**
+     * Accepts what {@link Double#parseDouble(String)} accepts in decimal notation, NaN and Infinity.
+     * Hexadecimal numbers are accepted without being checked.
+     */
+    static boolean isFloating(CharSequence s, int start, int end) {
+        int idx = start;
+        while (idx < end && s.charAt(idx) <= ' ') idx++;
+        while (end > idx && s.charAt(end - 1) <= ' ') end--;
+
+        if (idx < end && (s.charAt(idx) == '+' || s.charAt(idx) == '-')) idx++;
+        if (idx == end) return false;
+
+        if (regionEquals(s, idx, end, "NaN") || regionEquals(s, idx, end, "Infinity")) return true;
+        if (idx + 1 < end && s.charAt(idx) == '0' && (s.charAt(idx + 1) == 'x' || s.charAt(idx + 1) == 'X')) return true;
+
+        int digits = 0;
+        for (; idx < end && isDigit(s.charAt(idx)); idx++) digits++;
+        if (idx < end && s.charAt(idx) == '.')
+            for (idx++; idx < end && isDigit(s.charAt(idx)); idx++) digits++;
+        if (digits == 0) return false;
+
+        if (idx < end && (s.charAt(idx) == 'e' || s.charAt(idx) == 'E')) {
+            idx++;
+            if (idx < end && (s.charAt(idx) == '+' || s.charAt(idx) == '-')) idx++;
+            int exponentDigits = 0;
+            for (; idx < end && isDigit(s.charAt(idx)); idx++) exponentDigits++;
+            if (exponentDigits == 0) return false;
+        }
+
+        if (idx < end && "fFdD".indexOf(s.charAt(idx)) >= 0) idx++;
+        return idx == end;
+    }
+
+    /**
+     * Parses what {@link Double#parseDouble(String)} parses.
+     *
+     * @throws NumberFormatException If it's not a number.
+     */
+    static double parseDouble(CharSequence s, int start, int end) {
+        long decimal = decimal(s, start, end);
+        if (decimal != NOT_A_DECIMAL) {
+            long mantissa = decimal & MANTISSA_MASK;
+            int exponent = (int) (decimal >>> MANTISSA_BITS & EXPONENT_MASK) - EXPONENT_BIAS;
+            if (mantissa < 1L << 53 && Math.abs(exponent) < DOUBLE_POWERS_OF_TEN.length) {
+                double value = exponent < 0 ? mantissa / DOUBLE_POWERS_OF_TEN[-exponent] : mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+                return decimal < 0 ? -value : value;
+            }
+        }
+        return Double.parseDouble(s.subSequence(start, end).toString());
+    }
+
+    /**
+     * Parses what {@link Float#parseFloat(String)} parses.
+     *
+     * @throws NumberFormatException If it's not a number.
+     */
+    static float parseFloat(CharSequence s, int start, int end) {
+        long decimal = decimal(s, start, end);
+        if (decimal != NOT_A_DECIMAL) {
+            long mantissa = decimal & MANTISSA_MASK;
+            int exponent = (int) (decimal >>> MANTISSA_BITS & EXPONENT_MASK) - EXPONENT_BIAS;
+            if (mantissa < 1L << 24 && Math.abs(exponent) < FLOAT_POWERS_OF_TEN.length) {
+                float value = exponent < 0 ? mantissa / FLOAT_POWERS_OF_TEN[-exponent] : mantissa * FLOAT_POWERS_OF_TEN[exponent];
+                return decimal < 0 ? -value : value;
+            }
+        }
+        return Float.parseFloat(s.subSequence(start, end).toString());
+    }
+
+    /**
+     * Splits a decimal number into its digits and its power of ten, packed in a long: the sign in
+     * the sign bit, the biased power of ten above the digits, and the digits in the lowest bits.
+     *
+     * @return The packed number, or {@link #NOT_A_DECIMAL} if it isn't one the parse methods can
+     * compute exactly, which is then left for the wrapper classes to parse.
+     */
+    private static long decimal(CharSequence s, int start, int end) {
+        int idx = start;
+        while (idx < end && s.charAt(idx) <= ' ') idx++;
+        while (end > idx && s.charAt(end - 1) <= ' ') end--;
+
+        boolean negative = false;
+        if (idx < end && (s.charAt(idx) == '+' || s.charAt(idx) == '-')) negative = s.charAt(idx++) == '-';
+
+        long mantissa = 0;
+        int significant = 0, exponent = 0, digits = 0;
+        for (boolean fraction = false; idx < end; idx++) {
+            char c = s.charAt(idx);
+            if (c == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            if (!isDigit(c)) break;
+            if (mantissa != 0 || c != '0') significant++;
+            if (significant > MAX_SIGNIFICANT_DIGITS) return NOT_A_DECIMAL;
+            mantissa = mantissa * 10 + (c - '0');
+            if (fraction) exponent--;
+            digits++;
+        }
+        if (digits == 0) return NOT_A_DECIMAL;
+
+        if (idx < end && (s.charAt(idx) == 'e' || s.charAt(idx) == 'E')) {
+            idx++;
+            boolean negativeExponent = false;
+            if (idx < end && (s.charAt(idx) == '+' || s.charAt(idx) == '-')) negativeExponent = s.charAt(idx++) == '-';
+            int value = 0, exponentDigits = 0;
+            for (; idx < end && isDigit(s.charAt(idx)); idx++, exponentDigits++) {
+                if (exponentDigits == 3) return NOT_A_DECIMAL;
+                value = value * 10 + (s.charAt(idx) - '0');
+            }
+            if (exponentDigits == 0) return NOT_A_DECIMAL;
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (idx < end && "fFdD".indexOf(s.charAt(idx)) >= 0) idx++;
+        if (idx != end) return NOT_A_DECIMAL;
+
+        // A zero is exact with any power of ten.
+        if (mantissa == 0) exponent = 0;
+        if (Math.abs(exponent) >= EXPONENT_BIAS) return NOT_A_DECIMAL;
+
+        return (negative ? Long.MIN_VALUE : 0) | (long) (exponent + EXPONENT_BIAS) << MANTISSA_BITS | mantissa;
+    }
+
+    private static boolean regionEquals(CharSequence s, int start, int end, String string) {
+        if (end - start != string.length()) return false;
+        for (int i = 0; i < string.length(); i++)
+            if (s.charAt(start + i) != string.charAt(i)) return false;
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static NumberFormatException invalid(CharSequence s, int start, int end) {
+        return new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+    }
+}
@@ -3,66 +3,444 @@ package in.mcxiv.args;
 import java.io.File;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @FunctionalInterface
 public interface ObjectResolver extends BiFunction<Class, String, Object> {
 
     class Default {
 
-        public static final HashMap<Class<?>, ObjectResolver> RESOLVERS = new HashMap<>();
+        /**
+         * The resolvers every {@link ArgsEvaler} starts with. This map can't be modified,
+         * use {@link ArgsEvaler.ArgsEvalerBuilder#addResolver(Class, ObjectResolver)} instead.
+         */
+        public static final Map<Class<?>, ObjectResolver> RESOLVERS;
+
+        private static final CharSequenceResolver BYTE = new CharSequenceResolver() {
+            @Override
+            public Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+                return (byte) Numbers.parseInteger(s, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isInteger(s, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final CharSequenceResolver CHAR = new CharSequenceResolver() {
+            @Override
+            public Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+                if (start == end) throw new StringIndexOutOfBoundsException("An empty value has no character.");
+                return s.charAt(start);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return start < end;
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final CharSequenceResolver SHORT = new CharSequenceResolver() {
+            @Override
+            public Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+                return (short) Numbers.parseInteger(s, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isInteger(s, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        /**
+         * Views of the values packed in a {@link TokenBuffer}, which outlive the evaluation as long
+         * as the buffer isn't cleared, and Strings of any other values.
+         */
+        private static final CharSequenceResolver CHARS = new CharSequenceResolver() {
+            @Override
+            public Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+                CharSequence value = s.subSequence(start, end);
+                return s instanceof TokenBuffer.Chars ? value : value.toString();
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return true;
+            }
+        };
+
+        private static final IntResolver INT = new IntResolver() {
+            @Override
+            public int resolveInt(String s) {
+                return resolveInt(s, 0, s.length());
+            }
+
+            @Override
+            public int resolveInt(CharSequence s, int start, int end) {
+                return (int) Numbers.parseInteger(s, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isInteger(s, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final CharSequenceResolver FLOAT = new CharSequenceResolver() {
+            @Override
+            public Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+                return Numbers.parseFloat(s, start, end);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isFloating(s, start, end);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final LongResolver LONG = new LongResolver() {
+            @Override
+            public long resolveLong(String s) {
+                return resolveLong(s, 0, s.length());
+            }
+
+            @Override
+            public long resolveLong(CharSequence s, int start, int end) {
+                return Numbers.parseInteger(s, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isInteger(s, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final DoubleResolver DOUBLE = new DoubleResolver() {
+            @Override
+            public double resolveDouble(String s) {
+                return resolveDouble(s, 0, s.length());
+            }
+
+            @Override
+            public double resolveDouble(CharSequence s, int start, int end) {
+                return Numbers.parseDouble(s, start, end);
+            }
+
+            @Override
+            public boolean accepts(CharSequence s, int start, int end) {
+                return Numbers.isFloating(s, start, end);
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return accepts(s, 0, s.length());
+            }
+        };
+
+        private static final BooleanResolver BOOLEAN = new BooleanResolver() {
+            @Override
+            public boolean resolveBoolean(String s) {
+                return resolveBoolean(s, 0, s.length());
+            }
+
+            /**
+             * Like {@link Boolean#parseBoolean(String)}, it's true only for "true", ignoring the case.
+             */
+            @Override
+            public boolean resolveBoolean(CharSequence s, int start, int end) {
+                if (end - start != 4) return false;
+                for (int i = 0; i < 4; i++)
+                    if (Character.toLowerCase(s.charAt(start + i)) != "true".charAt(i)) return false;
+                return true;
+            }
+        };
+
+        /**
+         * A pattern can only be checked by compiling it, so it's compiled by the check, which catches
+         * the exception, and the pattern compiled last is given out rather than compiled again.
+         */
+        private static final ObjectResolver PATTERN = new ObjectResolver() {
+            private volatile Pattern last;
+
+            @SuppressWarnings("rawtypes")
+            @Override
+            public Object apply(Class objectClass, String s) {
+                Pattern pattern = last;
+                if (pattern == null || !pattern.pattern().equals(s)) last = pattern = Pattern.compile(s);
+                return pattern;
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                try {
+                    apply(Pattern.class, s);
+                    return true;
+                } catch (PatternSyntaxException e) {
+                    return false;
+                }
+            }
+        };
 
         static {
-            RESOLVERS.put(boolean.class, (c, s) -> Boolean.parseBoolean(s));
-            RESOLVERS.put(Boolean.class, (c, s) -> Boolean.parseBoolean(s));
-            RESOLVERS.put(byte.class, (c, s) -> Byte.parseByte(s));
-            RESOLVERS.put(Byte.class, (c, s) -> Byte.parseByte(s));
-            RESOLVERS.put(char.class/* */, (c, s) -> s.charAt(0));
-            RESOLVERS.put(Character.class, (c, s) -> s.charAt(0));
-            RESOLVERS.put(short.class, (c, s) -> Short.parseShort(s));
-            RESOLVERS.put(Short.class, (c, s) -> Short.parseShort(s));
-            RESOLVERS.put(int.class/**/, (c, s) -> Integer.parseInt(s));
-            RESOLVERS.put(Integer.class, (c, s) -> Integer.parseInt(s));
-            RESOLVERS.put(float.class, (c, s) -> Float.parseFloat(s));
-            RESOLVERS.put(Float.class, (c, s) -> Float.parseFloat(s));
-            RESOLVERS.put(long.class, (c, s) -> Long.parseLong(s));
-            RESOLVERS.put(Long.class, (c, s) -> Long.parseLong(s));
-            RESOLVERS.put(double.class, (c, s) -> Double.parseDouble(s));
-            RESOLVERS.put(Double.class, (c, s) -> Double.parseDouble(s));
-
-            RESOLVERS.put(String.class, (c, s) -> s);
-            RESOLVERS.put(StringBuilder.class, (c, s) -> new StringBuilder(s));
-            RESOLVERS.put(StringBuffer.class, (c, s) -> new StringBuffer(s));
-
-            RESOLVERS.put(BigInteger.class, (c, s) -> new BigInteger(s));
-            RESOLVERS.put(BigDecimal.class, (c, s) -> new BigDecimal(s));
-            RESOLVERS.put(AtomicInteger.class, (c, s) -> new AtomicInteger(Integer.parseInt(s)));
-            RESOLVERS.put(AtomicLong.class, (c, s) -> new AtomicLong(Long.parseLong(s)));
-            RESOLVERS.put(DoubleAdder.class, (c, s) -> {
+            HashMap<Class<?>, ObjectResolver> resolvers = new HashMap<>();
+
+            resolvers.put(boolean.class, BOOLEAN);
+            resolvers.put(Boolean.class, BOOLEAN);
+            resolvers.put(byte.class, BYTE);
+            resolvers.put(Byte.class, BYTE);
+            resolvers.put(char.class/* */, CHAR);
+            resolvers.put(Character.class, CHAR);
+            resolvers.put(short.class, SHORT);
+            resolvers.put(Short.class, SHORT);
+            resolvers.put(int.class/**/, INT);
+            resolvers.put(Integer.class, INT);
+            resolvers.put(float.class, FLOAT);
+            resolvers.put(Float.class, FLOAT);
+            resolvers.put(long.class, LONG);
+            resolvers.put(Long.class, LONG);
+            resolvers.put(double.class, DOUBLE);
+            resolvers.put(Double.class, DOUBLE);
+
+            resolvers.put(String.class, (c, s) -> s);
+            resolvers.put(CharSequence.class, CHARS);
+            resolvers.put(StringBuilder.class, (c, s) -> new StringBuilder(s));
+            resolvers.put(StringBuffer.class, (c, s) -> new StringBuffer(s));
+
+            resolvers.put(BigInteger.class, checked(Numbers::isDigits, (c, s) -> new BigInteger(s)));
+            resolvers.put(BigDecimal.class, checked(Numbers::isDecimal, (c, s) -> new BigDecimal(s)));
+            resolvers.put(AtomicInteger.class, checked(INT::accepts, (c, s) -> new AtomicInteger(INT.resolveInt(s))));
+            resolvers.put(AtomicLong.class, checked(LONG::accepts, (c, s) -> new AtomicLong(LONG.resolveLong(s))));
+            resolvers.put(DoubleAdder.class, checked(DOUBLE::accepts, (c, s) -> {
                 DoubleAdder adder = new DoubleAdder();
-                adder.add(Double.parseDouble(s));
+                adder.add(DOUBLE.resolveDouble(s));
                 return adder;
-            });
-            RESOLVERS.put(LongAdder.class, (c, s) -> {
+            }));
+            resolvers.put(LongAdder.class, checked(LONG::accepts, (c, s) -> {
                 LongAdder adder = new LongAdder();
-                adder.add(Long.parseLong(s));
+                adder.add(LONG.resolveLong(s));
                 return adder;
-            });
+            }));
+
+            resolvers.put(File.class, (c, s) -> new File(s));
+            resolvers.put(Pattern.class, PATTERN);
 
-            RESOLVERS.put(File.class, (c, s) -> new File(s));
-            RESOLVERS.put(Pattern.class, (c, s) -> Pattern.compile(s));
+            RESOLVERS = Collections.unmodifiableMap(resolvers);
+        }
+
+        private static ObjectResolver checked(Predicate<String> check, ObjectResolver resolver) {
+            return new ObjectResolver() {
+                @SuppressWarnings("rawtypes")
+                @Override
+                public Object apply(Class objectClass, String s) {
+                    return resolver.apply(objectClass, s);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return check.test(s);
+                }
+            };
+        }
+    }
+
+    /**
+     * An {@link ObjectResolver} for {@code int} and {@link Integer} which doesn't box its values.
+     * The evaluator stores them unboxed, see {@link ArgsEvaler.ResultMap#getInt(String, int)}.
+     */
+    @FunctionalInterface
+    interface IntResolver extends CharSequenceResolver {
+        int resolveInt(String s);
+
+        /**
+         * @see CharSequenceResolver#resolve(Class, CharSequence, int, int)
+         */
+        default int resolveInt(CharSequence s, int start, int end) {
+            return resolveInt(s.subSequence(start, end).toString());
+        }
+
+        @Override
+        default Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+            return resolveInt(s, start, end);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        default Object apply(Class objectClass, String s) {
+            return resolveInt(s);
+        }
+    }
+
+    /**
+     * An {@link ObjectResolver} for {@code long} and {@link Long} which doesn't box its values.
+     * The evaluator stores them unboxed, see {@link ArgsEvaler.ResultMap#getLong(String, long)}.
+     */
+    @FunctionalInterface
+    interface LongResolver extends CharSequenceResolver {
+        long resolveLong(String s);
+
+        /**
+         * @see CharSequenceResolver#resolve(Class, CharSequence, int, int)
+         */
+        default long resolveLong(CharSequence s, int start, int end) {
+            return resolveLong(s.subSequence(start, end).toString());
+        }
+
+        @Override
+        default Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+            return resolveLong(s, start, end);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        default Object apply(Class objectClass, String s) {
+            return resolveLong(s);
+        }
+    }
+
+    /**
+     * An {@link ObjectResolver} for {@code double} and {@link Double} which doesn't box its values.
+     * The evaluator stores them unboxed, see {@link ArgsEvaler.ResultMap#getDouble(String, double)}.
+     */
+    @FunctionalInterface
+    interface DoubleResolver extends CharSequenceResolver {
+        double resolveDouble(String s);
+
+        /**
+         * @see CharSequenceResolver#resolve(Class, CharSequence, int, int)
+         */
+        default double resolveDouble(CharSequence s, int start, int end) {
+            return resolveDouble(s.subSequence(start, end).toString());
+        }
+
+        @Override
+        default Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+            return resolveDouble(s, start, end);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        default Object apply(Class objectClass, String s) {
+            return resolveDouble(s);
+        }
+    }
+
+    /**
+     * An {@link ObjectResolver} for {@code boolean} and {@link Boolean} which doesn't box its values.
+     * The evaluator stores them unboxed, see {@link ArgsEvaler.ResultMap#getBoolean(String, boolean)}.
+     */
+    @FunctionalInterface
+    interface BooleanResolver extends CharSequenceResolver {
+        boolean resolveBoolean(String s);
+
+        /**
+         * @see CharSequenceResolver#resolve(Class, CharSequence, int, int)
+         */
+        default boolean resolveBoolean(CharSequence s, int start, int end) {
+            return resolveBoolean(s.subSequence(start, end).toString());
+        }
+
+        @Override
+        default Object resolve(Class<?> objectClass, CharSequence s, int start, int end) {
+            return resolveBoolean(s, start, end);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        default Object apply(Class objectClass, String s) {
+            return resolveBoolean(s);
+        }
+    }
+
+    /**
+     * An {@link ObjectResolver} which resolves a region of a CharSequence, so that the evaluator
+     * doesn't copy the value into a String first, like the value of a Named Argument, or an
+     * argument of a command line. The default resolvers of the primitive types are ones, and
+     * the primitive resolvers above are ones which copy the region unless they override it.
+     */
+    interface CharSequenceResolver extends ObjectResolver {
+
+        /**
+         * @param s     The characters, which must not be kept, they may be reused once this returns,
+         *              unless they're the ones of a {@link TokenBuffer}.
+         * @param start The index of the first character of the value.
+         * @param end   The index after the last character of the value.
+         * @return The resolved object.
+         */
+        Object resolve(Class<?> objectClass, CharSequence s, int start, int end);
+
+        /**
+         * @see ObjectResolver#accepts(String)
+         */
+        default boolean accepts(CharSequence s, int start, int end) {
+            return accepts(s.subSequence(start, end).toString());
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        default Object apply(Class objectClass, String s) {
+            return resolve(objectClass, s, 0, s.length());
         }
     }
 
     @Override
     Object apply(Class objectClass, String s);
 
+    /**
+     * Checks the value before it's resolved, when the evaluator collects errors instead of throwing
+     * them (see {@link ArgsEvaler.ArgsEvalerBuilder#setCollectingErrors(boolean)}), so that a value
+     * which can't be resolved is rejected without the cost of an exception.
+     * <p>
+     * It must return true for every value which can be resolved. A value it accepts may still fail
+     * to resolve, the exception is then caught and collected. By default, every value is accepted.
+     *
+     * @param s The value to be resolved.
+     * @return false if the value certainly can't be resolved.
+     */
+    default boolean accepts(String s) {
+        return true;
+    }
+
     default Object objectify(Class typeClass, String s) {
         return apply(typeClass, s);
     }
@@ -0,0 +1,460 @@
+package in.mcxiv.args;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap checks a token must pass to possibly match a Pattern element of an expression, so that
+ * most tokens are rejected before the regex runs.
+ * <p>
+ * When the index is built, the pattern is read into the literal prefix and suffix every match has,
+ * the bounds of the length of a match, the characters it may start with and the ones which may
+ * follow its prefix. A construct which isn't understood, like a lookaround, a back reference or
+ * a flag, makes the filter admit every token, so the filter only rejects tokens the pattern can't
+ * match.
+ * <p>
+ * The filter also knows the slot of its Pattern among the {@link Matcher}s an evaluation reuses.
+ */
+final class PatternFilter {
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    final Pattern pattern;
+    final int slot;
+
+    private final String prefix;
+    private final String suffix;
+    private final int minLength;
+    private final int maxLength;
+    private final Chars first;
+    private final Chars afterPrefix;
+
+    private PatternFilter(Pattern pattern, int slot, Shape shape) {
+        this.pattern = pattern;
+        this.slot = slot;
+        this.prefix = shape.prefix;
+        this.suffix = shape.suffix;
+        this.minLength = shape.min;
+        this.maxLength = shape.max;
+        this.first = shape.first;
+        this.afterPrefix = shape.after;
+    }
+
+    /**
+     * @param slot The index of the {@link Matcher} of the pattern in the array given to {@link #matcher(Matcher[], CharSequence)}.
+     */
+    static PatternFilter of(Pattern pattern, int slot) {
+        Parser parser = new Parser(pattern.pattern());
+        Shape shape = pattern.flags() == 0 ? parser.alternation() : null;
+        if (shape == null || parser.unsupported || parser.idx != parser.regex.length()) shape = Shape.anything();
+        return new PatternFilter(pattern, slot, shape);
+    }
+
+    /**
+     * @return false if the region certainly doesn't match the pattern.
+     */
+    boolean admits(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length < minLength || length > maxLength) return false;
+        if (length > 0 && !first.contains(s.charAt(start))) return false;
+        if (length > prefix.length() && !afterPrefix.contains(s.charAt(start + prefix.length()))) return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (s.charAt(start + i) != prefix.charAt(i)) return false;
+        for (int i = 0, offset = end - suffix.length(); i < suffix.length(); i++)
+            if (s.charAt(offset + i) != suffix.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * @param matchers The matchers an evaluation reuses, at least as many as the Patterns of the index.
+     * @return A matcher of the pattern over the input, reset rather than created if it can be.
+     */
+    Matcher matcher(Matcher[] matchers, CharSequence input) {
+        Matcher matcher = matchers[slot];
+        if (matcher == null || matcher.pattern() != pattern) return matchers[slot] = pattern.matcher(input);
+        return matcher.reset(input);
+    }
+
+    /**
+     * A set of characters: the ASCII ones by their bits, and any other one if {@code other}.
+     */
+    private static final class Chars {
+        private static final Chars NONE = new Chars(0, 0, false);
+        private static final Chars ALL = new Chars(~0L, ~0L, true);
+        private static final Chars DIGITS = new Chars(0x03FF_0000_0000_0000L, 0, false);
+        private static final Chars WORD = new Chars(0x03FF_0000_0000_0000L, 0x07FF_FFFE_87FF_FFFEL, false);
+        private static final Chars SPACES = new Chars(1L << ' ' | 1L << '\t' | 1L << '\n' | 1L << 0x0B | 1L << '\f' | 1L << '\r', 0, false);
+
+        private final long low, high;
+        private final boolean other;
+
+        private Chars(long low, long high, boolean other) {
+            this.low = low;
+            this.high = high;
+            this.other = other;
+        }
+
+        private static Chars of(char c) {
+            return c < 64 ? new Chars(1L << c, 0, false) : c < 128 ? new Chars(0, 1L << c, false) : new Chars(0, 0, true);
+        }
+
+        /**
+         * @return The characters from first to last.
+         */
+        private static Chars range(char first, char last) {
+            long low = 0, high = 0;
+            for (char c = first; c <= last && c < 128; c++) {
+                if (c < 64) low |= 1L << c;
+                else high |= 1L << c;
+            }
+            return new Chars(low, high, last >= 128);
+        }
+
+        private Chars or(Chars chars) {
+            return new Chars(low | chars.low, high | chars.high, other || chars.other);
+        }
+
+        private boolean contains(char c) {
+            return c < 64 ? (low & 1L << c) != 0 : c < 128 ? (high & 1L << c) != 0 : other;
+        }
+    }
+
+    /**
+     * What is known about the strings a part of a pattern matches.
+     */
+    private static final class Shape {
+        private int min, max;
+        private String prefix = "", suffix = "";
+
+        /**
+         * The only string it matches, or null.
+         */
+        private String literal;
+
+        /**
+         * The characters a match may start with, and the ones which may follow its prefix.
+         */
+        private Chars first = Chars.NONE, after = Chars.NONE;
+
+        private static Shape literal(String literal) {
+            Shape shape = new Shape();
+            shape.min = shape.max = literal.length();
+            shape.prefix = shape.suffix = shape.literal = literal;
+            if (!literal.isEmpty()) shape.first = Chars.of(literal.charAt(0));
+            return shape;
+        }
+
+        /**
+         * One character of the set, or two chars if it may be a character beyond the BMP.
+         */
+        private static Shape character(Chars chars, boolean supplementary) {
+            Shape shape = new Shape();
+            shape.min = 1;
+            shape.max = supplementary ? 2 : 1;
+            shape.first = shape.after = chars;
+            return shape;
+        }
+
+        private static Shape anything() {
+            Shape shape = character(Chars.ALL, true);
+            shape.min = 0;
+            shape.max = UNBOUNDED;
+            return shape;
+        }
+
+        private Shape then(Shape next) {
+            Shape shape = new Shape();
+            shape.min = add(min, next.min);
+            shape.max = add(max, next.max);
+            shape.literal = literal != null && next.literal != null ? literal + next.literal : null;
+            shape.prefix = literal != null ? literal + next.prefix : prefix;
+            shape.suffix = next.literal != null ? suffix + next.literal : next.suffix;
+            shape.first = min > 0 ? first : first.or(next.first);
+            // A match longer than the prefix has the character after it within this part.
+            shape.after = literal != null ? next.after : min > prefix.length() ? after : after.or(next.first);
+            return shape;
+        }
+
+        private Shape or(Shape alternative) {
+            Shape shape = new Shape();
+            shape.min = Math.min(min, alternative.min);
+            shape.max = Math.max(max, alternative.max);
+            shape.literal = literal != null && literal.equals(alternative.literal) ? literal : null;
+            int common = 0;
+            while (common < Math.min(prefix.length(), alternative.prefix.length()) && prefix.charAt(common) == alternative.prefix.charAt(common))
+                common++;
+            shape.prefix = prefix.substring(0, common);
+            shape.after = afterCommon(common).or(alternative.afterCommon(common));
+            common = 0;
+            while (common < Math.min(suffix.length(), alternative.suffix.length())
+                    && suffix.charAt(suffix.length() - 1 - common) == alternative.suffix.charAt(alternative.suffix.length() - 1 - common))
+                common++;
+            shape.suffix = suffix.substring(suffix.length() - common);
+            shape.first = first.or(alternative.first);
+            return shape;
+        }
+
+        /**
+         * @return The characters which may follow the first length characters of the prefix.
+         */
+        private Chars afterCommon(int length) {
+            return length < prefix.length() ? Chars.of(prefix.charAt(length)) : after;
+        }
+
+        private Shape repeat(int from, int to) {
+            Shape shape = new Shape();
+            shape.min = multiply(min, from);
+            shape.max = max == 0 ? 0 : multiply(max, to);
+            shape.first = first;
+            if (literal != null && from == to && literal.length() * from <= 64) {
+                StringBuilder repeated = new StringBuilder();
+                for (int i = 0; i < from; i++) repeated.append(literal);
+                shape.literal = shape.prefix = shape.suffix = repeated.toString();
+                if (from == 0) shape.first = Chars.NONE;
+            } else if (from > 0) {
+                shape.prefix = prefix;
+                shape.suffix = suffix;
+                // A match may repeat right after the prefix.
+                shape.after = literal != null ? first : min > prefix.length() ? after : after.or(first);
+            } else shape.after = first;
+            return shape;
+        }
+
+        private static int add(int a, int b) {
+            return a == UNBOUNDED || b == UNBOUNDED ? UNBOUNDED : (int) Math.min(UNBOUNDED, (long) a + b);
+        }
+
+        private static int multiply(int a, int b) {
+            return a == UNBOUNDED || b == UNBOUNDED ? UNBOUNDED : (int) Math.min(UNBOUNDED, (long) a * b);
+        }
+    }
+
+    /**
+     * Reads the shape of a regex. On anything it doesn't understand, it marks the regex as
+     * unsupported and stops, and the filter then admits everything.
+     */
+    private static final class Parser {
+        private final String regex;
+        private int idx;
+        private boolean unsupported;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Shape alternation() {
+            Shape shape = sequence();
+            while (!unsupported && idx < regex.length() && regex.charAt(idx) == '|') {
+                idx++;
+                shape = shape.or(sequence());
+            }
+            return shape;
+        }
+
+        private Shape sequence() {
+            Shape shape = Shape.literal("");
+            while (!unsupported && idx < regex.length() && regex.charAt(idx) != '|' && regex.charAt(idx) != ')')
+                shape = shape.then(quantified(atom()));
+            return shape;
+        }
+
+        private Shape quantified(Shape atom) {
+            if (unsupported || idx == regex.length()) return atom;
+            int from, to;
+            switch (regex.charAt(idx)) {
+                case '*':
+                    from = 0;
+                    to = UNBOUNDED;
+                    idx++;
+                    break;
+                case '+':
+                    from = 1;
+                    to = UNBOUNDED;
+                    idx++;
+                    break;
+                case '?':
+                    from = 0;
+                    to = 1;
+                    idx++;
+                    break;
+                case '{':
+                    idx++;
+                    from = to = number();
+                    if (next() == ',') {
+                        to = regex.charAt(idx) == '}' ? UNBOUNDED : number();
+                        next();
+                    }
+                    if (regex.charAt(idx - 1) != '}') return unsupported();
+                    break;
+                default:
+                    return atom;
+            }
+            // Lazy and possessive quantifiers match the same strings.
+            if (idx < regex.length() && (regex.charAt(idx) == '?' || regex.charAt(idx) == '+')) idx++;
+            return atom.repeat(from, to);
+        }
+
+        private Shape atom() {
+            char c = next();
+            switch (c) {
+                case '^':
+                case '$':
+                    return Shape.literal("");
+                case '.':
+                    return Shape.character(Chars.ALL, true);
+                case '[':
+                    return characterClass();
+                case '(':
+                    return group();
+                case '\\':
+                    return escape();
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    return unsupported();
+                default:
+                    if (Character.isSurrogate(c)) return unsupported();
+                    return Shape.literal(String.valueOf(c));
+            }
+        }
+
+        private Shape group() {
+            if (idx < regex.length() && regex.charAt(idx) == '?') {
+                idx++;
+                char kind = next();
+                if (kind == '<' && Character.isLetter(regex.charAt(idx))) {
+                    idx = regex.indexOf('>', idx) + 1;
+                    if (idx == 0) return unsupported();
+                } else if (kind != ':' && kind != '>') return unsupported();
+            }
+            Shape shape = alternation();
+            if (next() != ')') return unsupported();
+            return shape;
+        }
+
+        private Shape escape() {
+            char c = next();
+            switch (c) {
+                case 'd':
+                    return Shape.character(Chars.DIGITS, false);
+                case 'w':
+                    return Shape.character(Chars.WORD, false);
+                case 's':
+                    return Shape.character(Chars.SPACES, false);
+                case 'D':
+                case 'W':
+                case 'S':
+                case 'h':
+                case 'H':
+                case 'v':
+                case 'V':
+                case 'R':
+                    return Shape.character(Chars.ALL, true);
+                case 'p':
+                case 'P':
+                    if (next() == '{') {
+                        idx = regex.indexOf('}', idx) + 1;
+                        if (idx == 0) return unsupported();
+                    }
+                    return Shape.character(Chars.ALL, true);
+                case 'b':
+                case 'B':
+                case 'A':
+                case 'G':
+                case 'z':
+                case 'Z':
+                    return Shape.literal("");
+                case 'Q':
+                    int end = regex.indexOf("\\E", idx);
+                    String quoted = regex.substring(idx, end < 0 ? regex.length() : end);
+                    idx = end < 0 ? regex.length() : end + 2;
+                    for (int i = 0; i < quoted.length(); i++)
+                        if (Character.isSurrogate(quoted.charAt(i))) return unsupported();
+                    return Shape.literal(quoted);
+                default:
+                    return Shape.literal(String.valueOf(escaped(c)));
+            }
+        }
+
+        /**
+         * @return The character an escape outside of the above stands for.
+         */
+        private char escaped(char c) {
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return '\u0007';
+                case 'e':
+                    return '\u001B';
+                default:
+                    // Letters and digits are other classes, back references or code points.
+                    if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) unsupported = true;
+                    return c;
+            }
+        }
+
+        /**
+         * Reads a class made of characters, ranges and the classes \d, \w and \s. Any other class,
+         * like a negated or an intersected one, may start with any character.
+         */
+        private Shape characterClass() {
+            Chars chars = Chars.NONE;
+            boolean simple = regex.charAt(idx) != '^';
+            if (!simple) idx++;
+            if (regex.charAt(idx) == ']') return unsupported();
+
+            for (char c; !unsupported && (c = next()) != ']'; ) {
+                if (c == '[' || c == '&' || Character.isSurrogate(c)) return unsupported();
+                if (c == '\\') {
+                    char escape = next();
+                    if (escape == 'd') chars = chars.or(Chars.DIGITS);
+                    else if (escape == 'w') chars = chars.or(Chars.WORD);
+                    else if (escape == 's') chars = chars.or(Chars.SPACES);
+                    else if (escape == 'p' || escape == 'P' || escape == 'Q') return unsupported();
+                    else if (Character.isLetterOrDigit(escape)) simple = false;
+                    else chars = chars.or(Chars.of(escaped(escape)));
+                    continue;
+                }
+                if (regex.charAt(idx) == '-' && regex.charAt(idx + 1) != ']') {
+                    idx++;
+                    char last = next();
+                    if (last == '[' || last == '\\' || Character.isSurrogate(last)) return unsupported();
+                    chars = chars.or(Chars.range(c, last));
+                } else chars = chars.or(Chars.of(c));
+            }
+            return simple ? Shape.character(chars, false) : Shape.character(Chars.ALL, true);
+        }
+
+        private int number() {
+            int start = idx;
+            while (idx < regex.length() && Character.isDigit(regex.charAt(idx))) idx++;
+            if (start == idx || idx - start > 9) {
+                unsupported = true;
+                return 0;
+            }
+            return Integer.parseInt(regex.substring(start, idx));
+        }
+
+        private char next() {
+            if (idx == regex.length()) {
+                unsupported = true;
+                return 0;
+            }
+            return regex.charAt(idx++);
+        }
+
+        private Shape unsupported() {
+            unsupported = true;
+            return Shape.anything();
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package in.mcxiv.args;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Assigns an integer slot to every argument name of an {@link ArgsEvaler}.
+ * <p>
+ * All the names are known when the evaluator is built, so the evaluator writes the values
+ * straight into the slots of a {@link ArgsEvaler.ResultMap} without hashing the names.
+ * Arguments which share a name share a slot, just like they used to share a key.
+ */
+final class SlotLayout {
+
+    static final int NO_SLOT = -1;
+
+    private final String[] names;
+    private final TokenTable<Integer> slots;
+
+    SlotLayout(Collection<String> names) {
+        ArrayList<String> unique = new ArrayList<>(names.size());
+        slots = new TokenTable<>(names.size());
+
+        for (String name : names)
+            if (slots.putIfAbsent(name, unique.size()))
+                unique.add(name);
+
+        this.names = unique.toArray(new String[0]);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @return The slot of the given name, or {@link #NO_SLOT}.
+     */
+    int slotOf(Object name) {
+        if (!(name instanceof String)) return NO_SLOT;
+        Integer slot = slots.get((String) name);
+        return slot == null ? NO_SLOT : slot;
+    }
+}
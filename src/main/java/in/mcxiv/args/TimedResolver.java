@@ -0,0 +1,200 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ObjectResolver.BooleanResolver;
+import in.mcxiv.args.ObjectResolver.CharSequenceResolver;
+import in.mcxiv.args.ObjectResolver.DoubleResolver;
+import in.mcxiv.args.ObjectResolver.IntResolver;
+import in.mcxiv.args.ObjectResolver.LongResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps object resolvers so that their calls are reported to an {@link EvaluationListener}.
+ * <p>
+ * The arguments are bound to the wrapped resolvers, so only an evaluator with a listener pays for
+ * the timing. A wrapper implements the same primitive resolver interface as the resolver it wraps,
+ * so the values are still stored unboxed, resolves regions of a command line the same way if it
+ * can, and checks the values the same way. Checks aren't timed.
+ */
+final class TimedResolver {
+
+    private TimedResolver() {
+    }
+
+    static Map<Class<?>, ObjectResolver> wrap(Map<Class<?>, ObjectResolver> resolvers, EvaluationListener listener) {
+        HashMap<Class<?>, ObjectResolver> wrapped = new HashMap<>();
+        resolvers.forEach((clazz, resolver) -> wrapped.put(clazz, wrap(clazz, resolver, listener)));
+        return wrapped;
+    }
+
+    static ObjectResolver wrap(Class<?> clazz, ObjectResolver resolver, EvaluationListener listener) {
+        if (resolver instanceof IntResolver)
+            return new IntResolver() {
+                @Override
+                public int resolveInt(String s) {
+                    long start = System.nanoTime();
+                    try {
+                        return ((IntResolver) resolver).resolveInt(s);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public int resolveInt(CharSequence s, int start, int end) {
+                    long began = System.nanoTime();
+                    try {
+                        return ((IntResolver) resolver).resolveInt(s, start, end);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - began);
+                    }
+                }
+
+                @Override
+                public boolean accepts(CharSequence s, int start, int end) {
+                    return ((IntResolver) resolver).accepts(s, start, end);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return resolver.accepts(s);
+                }
+            };
+        if (resolver instanceof LongResolver)
+            return new LongResolver() {
+                @Override
+                public long resolveLong(String s) {
+                    long start = System.nanoTime();
+                    try {
+                        return ((LongResolver) resolver).resolveLong(s);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public long resolveLong(CharSequence s, int start, int end) {
+                    long began = System.nanoTime();
+                    try {
+                        return ((LongResolver) resolver).resolveLong(s, start, end);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - began);
+                    }
+                }
+
+                @Override
+                public boolean accepts(CharSequence s, int start, int end) {
+                    return ((LongResolver) resolver).accepts(s, start, end);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return resolver.accepts(s);
+                }
+            };
+        if (resolver instanceof DoubleResolver)
+            return new DoubleResolver() {
+                @Override
+                public double resolveDouble(String s) {
+                    long start = System.nanoTime();
+                    try {
+                        return ((DoubleResolver) resolver).resolveDouble(s);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public double resolveDouble(CharSequence s, int start, int end) {
+                    long began = System.nanoTime();
+                    try {
+                        return ((DoubleResolver) resolver).resolveDouble(s, start, end);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - began);
+                    }
+                }
+
+                @Override
+                public boolean accepts(CharSequence s, int start, int end) {
+                    return ((DoubleResolver) resolver).accepts(s, start, end);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return resolver.accepts(s);
+                }
+            };
+        if (resolver instanceof BooleanResolver)
+            return new BooleanResolver() {
+                @Override
+                public boolean resolveBoolean(String s) {
+                    long start = System.nanoTime();
+                    try {
+                        return ((BooleanResolver) resolver).resolveBoolean(s);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public boolean resolveBoolean(CharSequence s, int start, int end) {
+                    long began = System.nanoTime();
+                    try {
+                        return ((BooleanResolver) resolver).resolveBoolean(s, start, end);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - began);
+                    }
+                }
+
+                @Override
+                public boolean accepts(CharSequence s, int start, int end) {
+                    return ((BooleanResolver) resolver).accepts(s, start, end);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return resolver.accepts(s);
+                }
+            };
+        if (resolver instanceof CharSequenceResolver)
+            return new CharSequenceResolver() {
+                @Override
+                public Object resolve(Class<?> c, CharSequence s, int start, int end) {
+                    long began = System.nanoTime();
+                    try {
+                        return ((CharSequenceResolver) resolver).resolve(c, s, start, end);
+                    } finally {
+                        listener.resolved(clazz, System.nanoTime() - began);
+                    }
+                }
+
+                @Override
+                public boolean accepts(CharSequence s, int start, int end) {
+                    return ((CharSequenceResolver) resolver).accepts(s, start, end);
+                }
+
+                @Override
+                public boolean accepts(String s) {
+                    return resolver.accepts(s);
+                }
+            };
+        return new ObjectResolver() {
+            @SuppressWarnings("rawtypes")
+            @Override
+            public Object apply(Class c, String s) {
+                long start = System.nanoTime();
+                try {
+                    return resolver.objectify(c, s);
+                } finally {
+                    listener.resolved(clazz, System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public boolean accepts(String s) {
+                return resolver.accepts(s);
+            }
+        };
+    }
+}
@@ -0,0 +1,272 @@
+package in.mcxiv.args;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Arguments packed into a single char array, with the offset of the end of every one in an int
+ * array, for inputs of hundreds of thousands of arguments, like lists of files or ids.
+ * <p>
+ * An {@link ArgsEvaler} evaluates the packed arguments directly, without a String per argument.
+ * The Variadic Arguments are given as a {@link View} over the buffer, see
+ * {@link ArgsEvaler.ResultMap#getVariadicTokens()}, and the arguments of type CharSequence are
+ * resolved to views of their characters. The views stay valid while arguments are added, but
+ * not after {@link #clear()}.
+ * <p>
+ * A buffer must not be changed while it's evaluated.
+ */
+public final class TokenBuffer {
+
+    private char[] chars;
+    private int length;
+
+    /**
+     * The index in chars after every argument, the next one starts there.
+     */
+    private int[] ends;
+    private int size;
+
+    private final Chars sequence = new Chars();
+    private final Regions regions = new Regions();
+
+    public TokenBuffer() {
+        this(16, 256);
+    }
+
+    /**
+     * @param arguments  The number of arguments expected, to size the offsets.
+     * @param characters The number of characters in all of them, to size the buffer.
+     */
+    public TokenBuffer(int arguments, int characters) {
+        chars = new char[Math.max(characters, 16)];
+        ends = new int[Math.max(arguments, 4)];
+    }
+
+    public static TokenBuffer of(CharSequence... arguments) {
+        TokenBuffer buffer = new TokenBuffer();
+        for (CharSequence argument : arguments) buffer.add(argument);
+        return buffer;
+    }
+
+    /**
+     * Appends an argument, copying its characters into the buffer.
+     *
+     * @return this
+     */
+    public TokenBuffer add(CharSequence argument) {
+        return add(argument, 0, argument.length());
+    }
+
+    /**
+     * Appends the region of the sequence between start and end as an argument.
+     *
+     * @return this
+     */
+    public TokenBuffer add(CharSequence s, int start, int end) {
+        int count = end - start;
+        if (length + count > chars.length) chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+        if (s instanceof String) ((String) s).getChars(start, end, chars, length);
+        else for (int i = start; i < end; i++) chars[length + i - start] = s.charAt(i);
+        length += count;
+        split();
+        return this;
+    }
+
+    public TokenBuffer addAll(Iterable<? extends CharSequence> arguments) {
+        for (CharSequence argument : arguments) add(argument);
+        return this;
+    }
+
+    /**
+     * Appends a character to an argument which is ended by {@link #split()}.
+     */
+    void append(char c) {
+        if (length == chars.length) chars = Arrays.copyOf(chars, length * 2);
+        chars[length++] = c;
+    }
+
+    /**
+     * Ends the argument the characters since the previous one were appended to.
+     */
+    void split() {
+        if (size == ends.length) ends = Arrays.copyOf(ends, size * 2);
+        ends[size++] = length;
+    }
+
+    void removeLast() {
+        checkIndex(size - 1);
+        length = start(--size);
+    }
+
+    boolean startsWith(int idx, String prefix) {
+        int start = start(idx);
+        if (ends[idx] - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (chars[start + i] != prefix.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * Forgets all the arguments, keeping the arrays. The views over them become invalid.
+     */
+    public void clear() {
+        length = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The argument at the index, as a view over the buffer.
+     */
+    public CharSequence get(int idx) {
+        checkIndex(idx);
+        return new Tokens.Slice(sequence, start(idx), ends[idx]);
+    }
+
+    /**
+     * @return The argument at the index, copied into a String.
+     */
+    public String string(int idx) {
+        checkIndex(idx);
+        return new String(chars, start(idx), ends[idx] - start(idx));
+    }
+
+    Tokens tokens() {
+        return regions;
+    }
+
+    private int start(int idx) {
+        return idx == 0 ? 0 : ends[idx - 1];
+    }
+
+    private void checkIndex(int idx) {
+        if (idx < 0 || idx >= size) throw new IndexOutOfBoundsException("Index " + idx + " of " + size + " arguments.");
+    }
+
+    /**
+     * All the characters of the buffer as one sequence, whose sub sequences are views.
+     */
+    final class Chars implements CharSequence {
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+            return new Tokens.Slice(this, start, end);
+        }
+
+        String string(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return string(0, length);
+        }
+    }
+
+    /**
+     * The arguments as the evaluator sees them.
+     */
+    final class Regions extends Tokens.Regions {
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        CharSequence buffer(int idx) {
+            return sequence;
+        }
+
+        @Override
+        int start(int idx) {
+            return TokenBuffer.this.start(idx);
+        }
+
+        @Override
+        int end(int idx) {
+            return ends[idx];
+        }
+
+        @Override
+        String string(int idx) {
+            return sequence.string(start(idx), ends[idx]);
+        }
+
+        /**
+         * @return The arguments the cursor didn't consume, as a view.
+         */
+        View remaining(ArgsCursor args) {
+            int first = args.first(), count = args.remaining();
+            if (count == 0 || args.end() - first == count) return new View(TokenBuffer.this, null, first, count);
+
+            int[] positions = new int[count];
+            for (int idx = first, i = 0; idx < args.end(); idx = args.next(idx)) positions[i++] = idx;
+            return new View(TokenBuffer.this, positions, 0, count);
+        }
+    }
+
+    /**
+     * Some of the arguments of a buffer, by their positions, or a range of them if they're adjacent.
+     * The arguments are views over the buffer, use {@link #string(int)} or {@link #strings()} for Strings.
+     */
+    public static final class View extends AbstractList<CharSequence> implements RandomAccess {
+
+        private final TokenBuffer buffer;
+        private final int[] positions;
+        private final int from;
+        private final int size;
+
+        private View(TokenBuffer buffer, int[] positions, int from, int size) {
+            this.buffer = buffer;
+            this.positions = positions;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public CharSequence get(int index) {
+            return buffer.get(position(index));
+        }
+
+        public String string(int index) {
+            return buffer.string(position(index));
+        }
+
+        /**
+         * @return A new array of the arguments copied into Strings.
+         */
+        public String[] strings() {
+            String[] strings = new String[size];
+            for (int i = 0; i < size; i++) strings[i] = string(i);
+            return strings;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int position(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " of " + size + " arguments.");
+            return positions == null ? from + index : positions[index];
+        }
+    }
+}
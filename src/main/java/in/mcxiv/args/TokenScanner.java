@@ -0,0 +1,153 @@
+package in.mcxiv.args;
+
+import in.mcxiv.args.ArgsEvaler.EvaluationOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Classifies every token once by the phases which can match at it, so that when mixing is
+ * allowed, a phase visits only its candidates instead of every argument left.
+ * <p>
+ * A token is a candidate of a phase if it's the first word of an expression or a chain, a tag,
+ * or a name followed by the equator. All the words are kept in one table, so that a token is
+ * classified with a single lookup, plus one for the name if it has the equator. If there are
+ * expressions which don't start with a String, every token is a candidate of their phase.
+ * <p>
+ * A phase still tries its candidates in order, after the phases before it, so it finds exactly
+ * what it found by trying every argument: the ones it skips can't match whatever was consumed.
+ */
+final class TokenScanner {
+
+    static final int EXPRESSION = 0;
+    static final int CHAINED = 1;
+    static final int TAGGED = 2;
+    static final int NAMED = 3;
+    private static final int PHASES = 4;
+
+    /**
+     * The phases every word is a candidate of, by their bits.
+     */
+    private final TokenTable<Integer> words;
+
+    /**
+     * Null if the names aren't evaluated.
+     */
+    private final TokenTable<Integer> names;
+    private final String equator;
+
+    /**
+     * The phases every token is a candidate of.
+     */
+    private final int everywhere;
+
+    TokenScanner(EvaluationOrder[] order, ExpressionIndex expressions, ChainTrie chains, List<String> tags, List<String> names, String equator) {
+        HashMap<String, Integer> words = new HashMap<>();
+        boolean evaluatesNames = false;
+        int everywhere = 0;
+
+        for (EvaluationOrder phase : order) {
+            List<String> keys = new ArrayList<>();
+            int bit;
+            switch (phase) {
+                case EXPRESSION:
+                    bit = 1 << EXPRESSION;
+                    expressions.leadingLiterals(keys);
+                    if (expressions.matchesAnywhere()) everywhere |= bit;
+                    break;
+                case CHAINED:
+                    bit = 1 << CHAINED;
+                    chains.firstWords(keys);
+                    break;
+                case TAGGED:
+                    bit = 1 << TAGGED;
+                    keys.addAll(tags);
+                    break;
+                case NAMED:
+                    evaluatesNames = true;
+                    continue;
+                default:
+                    continue;
+            }
+            for (String key : keys) words.merge(key, bit, (a, b) -> a | b);
+        }
+
+        this.words = new TokenTable<>(words.size());
+        words.forEach(this.words::putIfAbsent);
+        this.names = evaluatesNames ? new TokenTable<>(names.size()) : null;
+        if (evaluatesNames) for (String name : names) this.names.putIfAbsent(name, 1 << NAMED);
+        this.equator = equator;
+        this.everywhere = everywhere;
+    }
+
+    /**
+     * Classifies the tokens into the candidates, forgetting the previous ones.
+     */
+    void scan(Tokens tokens, Candidates candidates) {
+        int size = tokens.size();
+        candidates.reset(size);
+
+        for (int idx = 0; idx < size; idx++) {
+            Integer phases = tokens.lookup(words, idx);
+            int bits = phases == null ? everywhere : everywhere | phases;
+            if (names != null) {
+                int equator = tokens.indexOf(idx, this.equator);
+                if (equator >= 0 && tokens.lookup(names, idx, 0, equator) != null) bits |= 1 << NAMED;
+            }
+            for (; bits != 0; bits &= bits - 1)
+                candidates.add(Integer.numberOfTrailingZeros(bits), idx);
+        }
+    }
+
+    /**
+     * The positions of the candidates of every phase, in order, reused by the evaluations of a scratch.
+     */
+    static final class Candidates {
+        private final int[][] positions = new int[PHASES][];
+        private final int[] sizes = new int[PHASES];
+
+        /**
+         * How far every phase has visited its candidates, it only moves forward.
+         */
+        private final int[] visited = new int[PHASES];
+
+        private void reset(int tokens) {
+            for (int phase = 0; phase < PHASES; phase++) {
+                if (positions[phase] == null || positions[phase].length < tokens) positions[phase] = new int[tokens];
+                sizes[phase] = 0;
+                visited[phase] = 0;
+            }
+        }
+
+        private void add(int phase, int position) {
+            positions[phase][sizes[phase]++] = position;
+        }
+
+        /**
+         * Starts visiting the candidates of the phase from the first one again.
+         */
+        void rewind(int phase) {
+            visited[phase] = 0;
+        }
+
+        /**
+         * Usually idx is after the position given in the previous call for the phase, it's before
+         * it only when the phase steps back after a match, and the candidates are searched then.
+         *
+         * @return The first unconsumed candidate of the phase at or after idx, or {@link ArgsCursor#end()}.
+         */
+        int seek(int phase, ArgsCursor args, int idx) {
+            int[] positions = this.positions[phase];
+            int candidate = visited[phase], size = sizes[phase];
+            if (candidate > 0 && positions[candidate - 1] >= idx) {
+                candidate = Arrays.binarySearch(positions, 0, candidate, idx);
+                if (candidate < 0) candidate = -candidate - 1;
+            }
+            while (candidate < size && (positions[candidate] < idx || args.isConsumed(positions[candidate]))) candidate++;
+            visited[phase] = candidate;
+            return candidate < size ? positions[candidate] : args.end();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package in.mcxiv.args;
+
+import java.util.Collection;
+
+/**
+ * An open addressing hash table from String keys to values, which can also be queried
+ * with a region of a {@link CharSequence} without allocating a substring for it.
+ * <p>
+ * It's filled once when an {@link ArgsEvaler} is built and only read afterwards.
+ * If a key is added twice, the first value is kept, just like the first registered
+ * argument used to win in a linear scan.
+ *
+ * @param <V> The type of the values.
+ */
+final class TokenTable<V> {
+
+    private final String[] keys;
+    private final Object[] values;
+    private final int mask;
+    private int size;
+
+    TokenTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new String[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true if the key was added, false if it was already present.
+     */
+    boolean putIfAbsent(String key, V value) {
+        if (size + 1 > (mask + 1) / 2)
+            throw new IllegalStateException("The table is full.");
+
+        int slot = spread(key.hashCode()) & mask;
+        for (; keys[slot] != null; slot = (slot + 1) & mask)
+            if (keys[slot].equals(key)) return false;
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        for (String k; (k = keys[slot]) != null; slot = (slot + 1) & mask)
+            if (k.equals(key)) return (V) values[slot];
+        return null;
+    }
+
+    /**
+     * Looks up the key equal to {@code sequence.subSequence(start, end)}, without creating it.
+     */
+    @SuppressWarnings("unchecked")
+    V get(CharSequence sequence, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + sequence.charAt(i);
+
+        int slot = spread(hash) & mask;
+        for (String k; (k = keys[slot]) != null; slot = (slot + 1) & mask)
+            if (regionEquals(k, sequence, start, end)) return (V) values[slot];
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the keys starting with the prefix to the collection.
+     */
+    void keysStartingWith(String prefix, Collection<String> out) {
+        for (String key : keys)
+            if (key != null && key.startsWith(prefix)) out.add(key);
+    }
+
+    private static boolean regionEquals(String key, CharSequence sequence, int start, int end) {
+        int length = end - start;
+        if (key.length() != length) return false;
+        if (sequence instanceof String)
+            return key.regionMatches(0, (String) sequence, start, length);
+        for (int i = 0; i < length; i++)
+            if (key.charAt(i) != sequence.charAt(start + i)) return false;
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
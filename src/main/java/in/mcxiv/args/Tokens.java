@@ -0,0 +1,410 @@
+package in.mcxiv.args;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Spliterator;
+
+/**
+ * The arguments given to an {@link ArgsEvaler}, as seen by the evaluator.
+ * <p>
+ * Tags, names, chains and literals are matched against the tokens directly, so that tokens
+ * which are only views over a larger buffer are turned into Strings only when a resolver or
+ * the {@link ArgsEvaler.ResultMap} needs one.
+ */
+abstract class Tokens {
+
+    abstract int size();
+
+    /**
+     * @return The token as a String, creating one if it isn't already.
+     */
+    abstract String string(int idx);
+
+    /**
+     * @return The token as a CharSequence, without copying it.
+     */
+    abstract CharSequence view(int idx);
+
+    abstract boolean equalTo(int idx, String string);
+
+    /**
+     * @return The index of the string within the token, or -1.
+     */
+    abstract int indexOf(int idx, String string);
+
+    /**
+     * @return The token after the index from, as a String.
+     */
+    abstract String substring(int idx, int from);
+
+    abstract <V> V lookup(TokenTable<V> table, int idx);
+
+    /**
+     * Looks up the part of the token between the indices from and to.
+     */
+    abstract <V> V lookup(TokenTable<V> table, int idx, int from, int to);
+
+    /**
+     * @return The characters the token is a region of, which resolvers read the value from.
+     */
+    abstract CharSequence buffer(int idx);
+
+    /**
+     * @return The index of the first character of the token in its {@link #buffer(int)}.
+     */
+    abstract int start(int idx);
+
+    /**
+     * @return The index after the last character of the token in its {@link #buffer(int)}.
+     */
+    abstract int end(int idx);
+
+    /**
+     * @return The index of a token with a quote which isn't closed, or -1.
+     */
+    int unterminated() {
+        return -1;
+    }
+
+    /**
+     * Tokens which are already Strings.
+     */
+    static final class Array extends Tokens {
+
+        private String[] args;
+
+        Array(String[] args) {
+            this.args = args;
+        }
+
+        Array reset(String[] args) {
+            this.args = args;
+            return this;
+        }
+
+        @Override
+        int size() {
+            return args.length;
+        }
+
+        @Override
+        String string(int idx) {
+            return args[idx];
+        }
+
+        @Override
+        CharSequence view(int idx) {
+            return args[idx];
+        }
+
+        @Override
+        boolean equalTo(int idx, String string) {
+            return string.equals(args[idx]);
+        }
+
+        @Override
+        int indexOf(int idx, String string) {
+            return args[idx].indexOf(string);
+        }
+
+        @Override
+        String substring(int idx, int from) {
+            return args[idx].substring(from);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx) {
+            return table.get(args[idx]);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx, int from, int to) {
+            return table.get(args[idx], from, to);
+        }
+
+        @Override
+        CharSequence buffer(int idx) {
+            return args[idx];
+        }
+
+        @Override
+        int start(int idx) {
+            return 0;
+        }
+
+        @Override
+        int end(int idx) {
+            return args[idx].length();
+        }
+    }
+
+    /**
+     * The tokens of others after an offset, like the arguments after a command.
+     */
+    static final class Tail extends Tokens {
+
+        private final Tokens tokens;
+        private final int offset;
+
+        Tail(Tokens tokens, int offset) {
+            this.tokens = tokens;
+            this.offset = offset;
+        }
+
+        @Override
+        int size() {
+            return tokens.size() - offset;
+        }
+
+        @Override
+        String string(int idx) {
+            return tokens.string(offset + idx);
+        }
+
+        @Override
+        CharSequence view(int idx) {
+            return tokens.view(offset + idx);
+        }
+
+        @Override
+        boolean equalTo(int idx, String string) {
+            return tokens.equalTo(offset + idx, string);
+        }
+
+        @Override
+        int indexOf(int idx, String string) {
+            return tokens.indexOf(offset + idx, string);
+        }
+
+        @Override
+        String substring(int idx, int from) {
+            return tokens.substring(offset + idx, from);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx) {
+            return tokens.lookup(table, offset + idx);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx, int from, int to) {
+            return tokens.lookup(table, offset + idx, from, to);
+        }
+
+        @Override
+        CharSequence buffer(int idx) {
+            return tokens.buffer(offset + idx);
+        }
+
+        @Override
+        int start(int idx) {
+            return tokens.start(offset + idx);
+        }
+
+        @Override
+        int end(int idx) {
+            return tokens.end(offset + idx);
+        }
+
+        @Override
+        int unterminated() {
+            int unterminated = tokens.unterminated();
+            return unterminated < offset ? -1 : unterminated - offset;
+        }
+    }
+
+    /**
+     * The tokens of a stream which are held at a time, from the one a match is looked for at.
+     * They're kept in an array twice as large as the window, and moved to its start only when
+     * the window reaches its end, so that every token is moved at most once on average.
+     */
+    static final class Window extends Tokens {
+
+        private final int width;
+        private final String[] held;
+        private int start;
+        private int end;
+
+        Window(int width) {
+            this.width = width;
+            this.held = new String[Math.max(width * 2, 2)];
+        }
+
+        /**
+         * Takes tokens from the stream until the window is full or the stream ends.
+         *
+         * @return false if the window is empty, the stream has ended.
+         */
+        boolean fill(Spliterator<String> stream) {
+            if (held.length - start < width) {
+                System.arraycopy(held, start, held, 0, end - start);
+                Arrays.fill(held, end - start, end, null);
+                end -= start;
+                start = 0;
+            }
+            while (end - start < width && stream.tryAdvance(this::hold)) ;
+            return end > start;
+        }
+
+        private void hold(String token) {
+            held[end++] = Objects.requireNonNull(token, "token");
+        }
+
+        /**
+         * Lets go of the first tokens.
+         */
+        void advance(int count) {
+            Arrays.fill(held, start, start + count, null);
+            start += count;
+        }
+
+        @Override
+        int size() {
+            return end - start;
+        }
+
+        @Override
+        String string(int idx) {
+            return held[start + idx];
+        }
+
+        @Override
+        CharSequence view(int idx) {
+            return held[start + idx];
+        }
+
+        @Override
+        boolean equalTo(int idx, String string) {
+            return string.equals(held[start + idx]);
+        }
+
+        @Override
+        int indexOf(int idx, String string) {
+            return held[start + idx].indexOf(string);
+        }
+
+        @Override
+        String substring(int idx, int from) {
+            return held[start + idx].substring(from);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx) {
+            return table.get(held[start + idx]);
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx, int from, int to) {
+            return table.get(held[start + idx], from, to);
+        }
+
+        @Override
+        CharSequence buffer(int idx) {
+            return held[start + idx];
+        }
+
+        @Override
+        int start(int idx) {
+            return 0;
+        }
+
+        @Override
+        int end(int idx) {
+            return held[start + idx].length();
+        }
+    }
+
+    /**
+     * Tokens which are regions of larger buffers.
+     */
+    abstract static class Regions extends Tokens {
+
+        @Override
+        String string(int idx) {
+            return buffer(idx).subSequence(start(idx), end(idx)).toString();
+        }
+
+        @Override
+        CharSequence view(int idx) {
+            return new Slice(buffer(idx), start(idx), end(idx));
+        }
+
+        @Override
+        boolean equalTo(int idx, String string) {
+            CharSequence buffer = buffer(idx);
+            int start = start(idx);
+            if (end(idx) - start != string.length()) return false;
+            for (int i = 0; i < string.length(); i++)
+                if (buffer.charAt(start + i) != string.charAt(i)) return false;
+            return true;
+        }
+
+        @Override
+        int indexOf(int idx, String string) {
+            CharSequence buffer = buffer(idx);
+            int start = start(idx), last = end(idx) - string.length();
+            SEARCH:
+            for (int i = start; i <= last; i++) {
+                for (int j = 0; j < string.length(); j++)
+                    if (buffer.charAt(i + j) != string.charAt(j)) continue SEARCH;
+                return i - start;
+            }
+            return -1;
+        }
+
+        @Override
+        String substring(int idx, int from) {
+            return buffer(idx).subSequence(start(idx) + from, end(idx)).toString();
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx) {
+            return table.get(buffer(idx), start(idx), end(idx));
+        }
+
+        @Override
+        <V> V lookup(TokenTable<V> table, int idx, int from, int to) {
+            return table.get(buffer(idx), start(idx) + from, start(idx) + to);
+        }
+    }
+
+    /**
+     * A CharSequence over a region of another one, sharing its characters.
+     */
+    static final class Slice implements CharSequence {
+
+        private final CharSequence buffer;
+        private final int start;
+        private final int end;
+
+        Slice(CharSequence buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return buffer.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to)
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+            return new Slice(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            if (buffer instanceof TokenBuffer.Chars) return ((TokenBuffer.Chars) buffer).string(start, end);
+            return buffer.subSequence(start, end).toString();
+        }
+    }
+}
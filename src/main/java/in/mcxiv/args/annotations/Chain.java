@@ -0,0 +1,25 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field to hold a Chain Argument (or a Word Argument, if there's only one word).
+ * The field is either a {@code String[]}, set to the words, or a {@code boolean}, set to true,
+ * if the chain occurs in the arguments.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#addChain(String, String...)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Chain {
+
+    /**
+     * @return The words of the chain, in order.
+     */
+    String[] value();
+}
@@ -0,0 +1,32 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@code Object[]} field to hold an Expression Argument. As annotations can only hold
+ * constants, the elements of the expression are written as Strings:
+ * <ul>
+ *     <li>{@code "{int}"}, a type in braces, is a Class element. Primitive types, the classes of
+ *     {@code java.lang} and fully qualified class names can be used.</li>
+ *     <li>{@code "/regex/"}, a regex between slashes, is a Pattern element.</li>
+ *     <li>Any other String is a literal.</li>
+ * </ul>
+ * The field is set to the values of the elements, like the value of an Expression Argument
+ * in a {@link in.mcxiv.args.ArgsEvaler.ResultMap}.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#addExpression(String, Object...)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Expression {
+
+    /**
+     * @return The elements of the expression.
+     */
+    String[] value();
+}
@@ -0,0 +1,19 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field to hold an Indexed Argument. The indexed fields of a class are filled
+ * in the order they're declared in.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#addIndexed(String, Class)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+}
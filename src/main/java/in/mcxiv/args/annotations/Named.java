@@ -0,0 +1,23 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field to hold a Named Argument, given as {@code name=value}.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#addNamed(String, Class)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Named {
+
+    /**
+     * @return The name of the argument, the name of the field if it's empty.
+     */
+    String value() default "";
+}
@@ -0,0 +1,23 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field to hold a Tagged Argument, the argument right after the tag.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#addTagged(String, Class)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Tagged {
+
+    /**
+     * @return The tag, like {@code -o}.
+     */
+    String value();
+}
@@ -0,0 +1,19 @@
+package in.mcxiv.args.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code String[]} field to hold the Variadic Arguments, the arguments left after all
+ * the others were evaluated. It's set only if there are any left.
+ *
+ * @see in.mcxiv.args.ArgsEvaler.ArgsEvalerBuilder#setHasVariadicEnding(boolean)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Variadic {
+}
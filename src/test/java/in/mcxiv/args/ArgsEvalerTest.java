@@ -2,14 +2,39 @@ package in.mcxiv.args;
 
 import in.mcxiv.args.ArgsEvaler.EvaluationOrder;
 import in.mcxiv.args.ArgsEvaler.ResultMap;
+import in.mcxiv.args.annotations.Chain;
+import in.mcxiv.args.annotations.Expression;
+import in.mcxiv.args.annotations.Indexed;
+import in.mcxiv.args.annotations.Named;
+import in.mcxiv.args.annotations.Tagged;
+import in.mcxiv.args.annotations.Variadic;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import static in.mcxiv.args.ArgsEvaler.*;
@@ -161,6 +186,1164 @@ class ArgsEvalerTest {
         assertEquals("a", resultMap.getT("A"));
     }
 
+    @Test
+    void testEvaluatedArgumentsAreSkipped() {
+        ResultMap resultMap;
+
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addTagged("-t")
+                .addChain("chain", "this", "is", "it")
+                .addIndexed("A")
+                .setHasVariadicEnding(true)
+                .setEvaluationOrder(EvaluationOrder.TAGGED, EvaluationOrder.CHAINED)
+                .setMixingEachTypeIsAllowed(true)
+                .build();
+
+        resultMap = evaluator.evaluate(args("a", "this", "-t", "T", "is", "-t", "U", "it", "b", "c"));
+        assertEquals("U", resultMap.getT("-t"));
+        assertArrayEquals(new String[]{"this", "is", "it"}, resultMap.getT("chain"));
+        assertEquals("a", resultMap.getT("A"));
+        assertArrayEquals(new String[]{"b", "c"}, resultMap.getVariadic());
+
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(args("a", "-t")));
+    }
+
+    @Test
+    void testChainsRegisteredFirstWin() {
+        ResultMap resultMap;
+
+        final ArgsEvaler evaluator1 = new ArgsEvaler.ArgsEvalerBuilder()
+                .addWord("word", "git")
+                .addChain("chain", "git", "remote", "add")
+                .addChain("shorter chain", "git", "remote")
+                .setHasVariadicEnding(true)
+                .build();
+
+        resultMap = evaluator1.evaluate(args("git", "remote", "add"));
+        assertEquals("git", ((String[]) resultMap.getT("word"))[0]);
+        assertNull(resultMap.getT("chain"));
+        assertArrayEquals(new String[]{"remote", "add"}, resultMap.getVariadic());
+
+        final ArgsEvaler evaluator2 = new ArgsEvaler.ArgsEvalerBuilder()
+                .addChain("chain", "git", "remote", "add")
+                .addChain("shorter chain", "git", "remote")
+                .addWord("word", "git")
+                .setHasVariadicEnding(true)
+                .build();
+
+        resultMap = evaluator2.evaluate(args("git", "remote", "add", "git", "remote", "git", "push"));
+        assertArrayEquals(new String[]{"git", "remote", "add"}, resultMap.getT("chain"));
+        assertArrayEquals(new String[]{"git", "remote"}, resultMap.getT("shorter chain"));
+        assertArrayEquals(new String[]{"git"}, resultMap.getT("word"));
+        assertArrayEquals(new String[]{"push"}, resultMap.getVariadic());
+    }
+
+    @Test
+    void testExpressionsCheckLiteralsFirst() {
+        ResultMap resultMap;
+        AtomicInteger predicateCalls = new AtomicInteger();
+
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("counted", "set", predicate(s -> predicateCalls.incrementAndGet() > 0), "to", int.class)
+                .addExpression("any", predicate(s -> s.startsWith("#")), int.class)
+                .addExpression("set", "set", String.class, int.class)
+                .setHasVariadicEnding(true)
+                .build();
+
+        resultMap = evaluator.evaluate(args("set", "x", "4", "#y", "5", "as"));
+        assertEquals(0, predicateCalls.get());
+        assertArrayEquals(new Object[]{"set", "x", 4}, resultMap.getT("set"));
+        assertArrayEquals(new Object[]{"#y", 5}, resultMap.getT("any"));
+        assertArrayEquals(new String[]{"as"}, resultMap.getVariadic());
+
+        resultMap = evaluator.evaluate(args("set", "x", "to", "4"));
+        assertEquals(1, predicateCalls.get());
+        assertArrayEquals(new Object[]{"set", "x", "to", 4}, resultMap.getT("counted"));
+        assertNull(resultMap.getT("set"));
+    }
+
+    @Test
+    void testNameEquatorSyllableIsMatchedLiterally() {
+        ResultMap resultMap;
+
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addNamed("X")
+                .addNamed("XY", int.class)
+                .addIndexed("A")
+                .setNameEquatorSyllable(".")
+                .build();
+
+        resultMap = evaluator.evaluate(args("XY.12", "X.x.y", "X", "Z.z"));
+        assertEquals(12, resultMap.get("XY"));
+        assertEquals("x.y", resultMap.getT("X"));
+        assertEquals("X", resultMap.getT("A"));
+    }
+
+    @Test
+    void testResolversAreBoundWhenBuilding() {
+        assertThrows(IllegalArgumentException.class, () -> new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("A", ByteBuffer.class)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("E", "bytes", pattern("<(.*)>", ByteBuffer.class))
+                .build());
+
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("A", int.class)
+                .addTagged("-t", int.class)
+                .build();
+
+        assertEquals(1, evaluator.evaluate(args("-t", "1", "1")).get("-t"));
+        evaluator.addResolver(int.class, (c, s) -> s.length());
+        ResultMap resultMap = evaluator.evaluate(args("-t", "22", "333"));
+        assertEquals(2, resultMap.get("-t"));
+        assertEquals(3, resultMap.get("A"));
+    }
+
+    @Test
+    void testConcurrentEvaluationAndResolverUpdates() throws InterruptedException {
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("A", int.class)
+                .addTagged("-t", int.class)
+                .addNamed("X", int.class)
+                .addExpression("E", "e", int.class)
+                .addResolver(int.class, (c, s) -> -1)
+                .build();
+
+        final int threads = 8;
+        final int iterations = 20_000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Thread writer = new Thread(() -> {
+            try {
+                start.await();
+                for (int version = 0; !done.get(); version++) {
+                    final int value = version;
+                    evaluator.addResolver(int.class, (c, s) -> value);
+                    evaluator.addResolver(Integer.class, (c, s) -> value);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+
+        Thread[] readers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            readers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < iterations; j++) {
+                        ResultMap resultMap = evaluator.evaluate(args("-t", "1", "e", "2", "X=3", "4"));
+                        Object value = resultMap.get("A");
+                        assertNotNull(value);
+                        assertEquals(value, resultMap.get("-t"));
+                        assertEquals(value, resultMap.get("X"));
+                        assertEquals(value, ((Object[]) resultMap.get("E"))[1]);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            readers[i].start();
+        }
+        writer.start();
+
+        start.countDown();
+        for (Thread reader : readers) reader.join();
+        done.set(true);
+        writer.join();
+
+        if (failure.get() != null) fail(failure.get());
+        assertThrows(UnsupportedOperationException.class, () -> ObjectResolver.Default.RESOLVERS.put(File.class, (c, s) -> s));
+    }
+
+    @Test
+    void testResultMapSlotsAndReuse() {
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("A")
+                .addNamed("X", int.class)
+                .addWord("help")
+                .setHasVariadicEnding(true)
+                .build();
+
+        int slotA = evaluator.slotOf("A");
+        int slotX = evaluator.slotOf("X");
+        assertEquals(-1, evaluator.slotOf("Y"));
+
+        ResultMap resultMap = evaluator.evaluate(args("X=1", "a", "b"));
+        assertEquals("a", resultMap.getAt(slotA));
+        assertEquals(1, (int) resultMap.getTAt(slotX));
+        assertFalse(resultMap.isPresentAt(evaluator.slotOf("help")));
+        assertEquals(3, resultMap.size());
+
+        resultMap.put("not an argument", "value");
+        assertEquals("value", resultMap.get("not an argument"));
+        assertEquals(4, resultMap.entrySet().size());
+
+        ResultMap reused = evaluator.evaluate(args("help", "c"), resultMap);
+        assertSame(resultMap, reused);
+        assertNull(reused.getAt(slotX));
+        assertNull(reused.get("not an argument"));
+        assertEquals("c", reused.get("A"));
+        assertTrue(reused.containsKey("help"));
+        assertEquals(2, reused.size());
+
+        reused.entrySet().removeIf(entry -> entry.getKey().equals("A"));
+        assertFalse(reused.containsKey("A"));
+        assertEquals(1, reused.size());
+    }
+
+    @Test
+    void testUnboxedValues() {
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("i", int.class)
+                .addIndexed("l", Long.class)
+                .addTagged("-d", double.class)
+                .addTagged("-b", boolean.class)
+                .addNamed("s", short.class)
+                .build();
+
+        ResultMap resultMap = evaluator.evaluate(args("-d", "2.5", "-b", "true", "s=7", "-3", "40000000000"));
+        assertEquals(-3, resultMap.getInt("i", 0));
+        assertEquals(-3L, resultMap.getLong("i", 0));
+        assertEquals(40000000000L, resultMap.getLong("l", 0));
+        assertEquals(2.5, resultMap.getDouble("-d", 0));
+        assertTrue(resultMap.getBoolean("-b", false));
+        assertEquals(7, resultMap.getInt("s", 0));
+
+        assertEquals(-3, resultMap.get("i"));
+        assertEquals(40000000000L, resultMap.get("l"));
+        assertEquals(2.5, resultMap.get("-d"));
+        assertEquals(true, resultMap.get("-b"));
+        assertEquals((short) 7, resultMap.get("s"));
+
+        int slot = evaluator.slotOf("i");
+        resultMap = evaluator.evaluate(args("5"), resultMap);
+        assertEquals(5, resultMap.getIntAt(slot, 0));
+        assertEquals(1.5, resultMap.getDouble("-d", 1.5));
+        assertFalse(resultMap.getBoolean("-b", false));
+        assertEquals(9, resultMap.getInt("not an argument", 9));
+    }
+
+    @Test
+    void testBatchEvaluation() {
+        final ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("i", int.class)
+                .addTagged("-t")
+                .build();
+
+        List<String[]> argsList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            argsList.add(args("-t", "t" + i, String.valueOf(i)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<ResultMap> maps = evaluator.evaluateAll(argsList, executor);
+            assertEquals(argsList.size(), maps.size());
+            for (int i = 0; i < maps.size(); i++) {
+                assertEquals(i, maps.get(i).getInt("i", -1));
+                assertEquals("t" + i, maps.get(i).get("-t"));
+            }
+
+            maps = evaluator.evaluateAll(argsList.stream());
+            for (int i = 0; i < maps.size(); i++)
+                assertEquals(i, maps.get(i).getInt("i", -1));
+
+            AtomicLong sum = new AtomicLong();
+            evaluator.forEachEvaluated(argsList, executor, (map, idx) -> {
+                assertEquals(idx, map.getInt("i", -1));
+                sum.addAndGet(map.getInt("i", 0));
+            });
+            assertEquals(999 * 1000 / 2, sum.get());
+
+            argsList.set(500, args("not a number"));
+            assertThrows(NumberFormatException.class, () -> evaluator.evaluateAll(argsList, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testCommandLineEvaluation() {
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("file")
+                .addIndexed("count", int.class)
+                .addNamed("mode")
+                .addTagged("-m")
+                .addChain("go", "go", "now")
+                .addExpression("range", "from", Integer.class, Pattern.compile("to(\\d+)"))
+                .setHasVariadicEnding(true)
+                .build();
+
+        ResultMap map = evaluator.evaluate("go now  -m 'hello world' mode=\"a b\" from 3 to7 \"my file.txt\" 42 x\\ y \"\" a'b'\"c\\\"d\"");
+        assertArrayEquals(args("go", "now"), (Object[]) map.get("go"));
+        assertEquals("hello world", map.get("-m"));
+        assertEquals("a b", map.get("mode"));
+        assertArrayEquals(new Object[]{"from", 3, "7"}, (Object[]) map.get("range"));
+        assertEquals("my file.txt", map.get("file"));
+        assertEquals(42, map.getInt("count", -1));
+        assertArrayEquals(args("x y", "", "abc\"d"), map.getVariadic());
+
+        // Reusing the map reuses the tokens as well.
+        assertSame(map, evaluator.evaluate(new StringBuilder("f 1 -m m"), map));
+        assertEquals("f", map.get("file"));
+        assertEquals("m", map.get("-m"));
+        assertFalse(map.containsKey("mode"));
+
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate("f 1 -m 'oops"));
+    }
+
+    @Test
+    void testLazyResolution() throws InterruptedException {
+        AtomicInteger resolved = new AtomicInteger();
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .setLazyResolution(true)
+                .addIndexed("i", BigInteger.class)
+                .addNamed("n", BigInteger.class)
+                .addTagged("-t", int.class)
+                .addResolver(BigInteger.class, (c, s) -> {
+                    resolved.incrementAndGet();
+                    return new BigInteger(s);
+                })
+                .build();
+
+        ResultMap map = evaluator.evaluate(args("-t", "x", "n=12", "34"));
+        assertEquals(0, resolved.get());
+        assertTrue(map.containsKey("n"));
+
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++)
+            (readers[i] = new Thread(() -> assertEquals(BigInteger.valueOf(12), map.get("n")))).start();
+        for (Thread reader : readers) reader.join();
+        assertEquals(BigInteger.valueOf(12), map.get("n"));
+        assertEquals(1, resolved.get());
+
+        assertEquals(BigInteger.valueOf(34), map.getT("i"));
+        assertEquals(2, resolved.get());
+
+        // The failure is thrown when the value is read.
+        assertThrows(NumberFormatException.class, () -> map.get("-t"));
+        assertThrows(NumberFormatException.class, () -> map.getInt("-t", 0));
+    }
+
+    @Test
+    void testCachingResolver() throws InterruptedException {
+        AtomicInteger compiled = new AtomicInteger();
+        CachingResolver patterns = new CachingResolver((c, s) -> {
+            compiled.incrementAndGet();
+            return Pattern.compile(s);
+        }, 2);
+
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addTagged("--pattern", Pattern.class)
+                .addResolver(Pattern.class, patterns)
+                .build();
+
+        Pattern first = evaluator.evaluate(args("--pattern", "a+")).getT("--pattern");
+        assertSame(first, evaluator.evaluate(args("--pattern", "a+")).getT("--pattern"));
+        evaluator.evaluate(args("--pattern", "b+"));
+        evaluator.evaluate(args("--pattern", "c+")); // Evicts "a+"
+        assertNotSame(first, evaluator.evaluate(args("--pattern", "a+")).getT("--pattern"));
+
+        assertEquals(4, compiled.get());
+        CachingResolver.Stats stats = patterns.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(4, stats.misses());
+        assertEquals(2, stats.evictions());
+        assertEquals(2, patterns.size());
+
+        // Values which can be modified can't be cached, unless the resolver says they can't be.
+        assertThrows(IllegalArgumentException.class, () -> new ArgsEvaler.ArgsEvalerBuilder()
+                .addResolver(StringBuilder.class, new CachingResolver((c, s) -> new StringBuilder(s), 8)));
+        assertThrows(IllegalArgumentException.class, () -> evaluator
+                .addResolver(AtomicInteger.class, new CachingResolver((c, s) -> new AtomicInteger(), 8)));
+        CachingResolver.Immutable optionals = (c, s) -> Optional.of(s);
+        new ArgsEvaler.ArgsEvalerBuilder().addResolver(Optional.class, new CachingResolver(optionals, 8));
+
+        // Values expire after their time to live.
+        CachingResolver expiring = new CachingResolver((c, s) -> s, 8, 1, TimeUnit.NANOSECONDS);
+        expiring.apply(String.class, "x");
+        Thread.sleep(1);
+        expiring.apply(String.class, "x");
+        assertEquals(0, expiring.stats().hits());
+        assertEquals(1, expiring.stats().evictions());
+
+        // Primitive resolvers keep their values unboxed, so they aren't cached.
+        assertThrows(IllegalArgumentException.class, () -> new CachingResolver(ObjectResolver.Default.RESOLVERS.get(int.class), 8));
+
+        // Threads hitting and missing together never hold more values than the maximum size.
+        CachingResolver shared = new CachingResolver((c, s) -> s, 16);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            (threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        String value = "v" + (i % 7 == seed ? i % 64 : i % 8);
+                        assertEquals(value, shared.apply(String.class, value));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            })).start();
+        }
+        for (Thread thread : threads) thread.join();
+        if (failure.get() != null) fail(failure.get());
+        assertTrue(shared.size() <= 16);
+        assertEquals(80000, shared.stats().requests());
+        shared.clear();
+        assertEquals(0, shared.size());
+        assertEquals("v1", shared.apply(String.class, "v1"));
+        assertEquals(1, shared.size());
+    }
+
+    @Test
+    void testEvaluationListener() {
+        EvaluationStats stats = new EvaluationStats();
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .setEvaluationListener(stats)
+                .setHasVariadicEnding(true)
+                .addExpression("e", "from", int.class)
+                .addTagged("-t", BigInteger.class)
+                .addNamed("n", int.class)
+                .addIndexed("i")
+                .build();
+
+        for (int i = 0; i < 10; i++)
+            evaluator.evaluate(args("from", "1", "-t", "2", "n=3", "i", "v"));
+
+        EvaluationStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(10, snapshot.evaluations().count());
+        assertTrue(snapshot.evaluations().percentileNanos(0.99) <= snapshot.evaluations().maxNanos());
+
+        // A match is one attempt, however many positions it consumes.
+        assertEquals(60, snapshot.phase(ArgumentTypes.EXPRESSION).attempts());
+        assertEquals(10, snapshot.phase(ArgumentTypes.EXPRESSION).hits());
+        assertEquals(40, snapshot.phase(ArgumentTypes.TAGGED).attempts());
+        assertEquals(10, snapshot.phase(ArgumentTypes.TAGGED).hits());
+        assertEquals(30, snapshot.phase(ArgumentTypes.NAMED).attempts());
+        assertEquals(10, snapshot.phase(ArgumentTypes.NAMED).hits());
+        assertEquals(10, snapshot.phase(ArgumentTypes.INDEXED).hits());
+        assertEquals(10, snapshot.phase(ArgumentTypes.VARIADIC).count());
+        assertEquals(0, snapshot.phase(ArgumentTypes.CHAINED).hits());
+
+        assertEquals(20, snapshot.resolver(int.class).count()); // The expression and the named argument
+        assertEquals(10, snapshot.resolver(BigInteger.class).count());
+        assertEquals(10, snapshot.resolver(String.class).count());
+
+        // Primitive values are still stored unboxed, the resolvers are wrapped in their own kind.
+        ResultMap map = evaluator.evaluate(args("n=3"));
+        assertEquals(3, map.getIntAt(evaluator.slotOf("n"), -1));
+
+        stats.reset();
+        assertEquals(0, stats.snapshot().evaluations().count());
+    }
+
+    static class Options {
+        @Expression({"from", "{int}", "to", "/at(\\d+)/"})
+        Object[] range;
+        @Expression({"{long}", "times"})
+        Object[] times;
+        @Chain({"git", "remote", "add"})
+        String[] remote;
+        @Chain("--verbose")
+        boolean verbose;
+        @Tagged("-o")
+        File output;
+        @Tagged("--client")
+        boolean client;
+        @Named
+        int level = -1;
+        @Named("mode")
+        EvaluationOrder order;
+        @Indexed
+        String input;
+        @Indexed
+        double scale;
+        @Variadic
+        String[] rest;
+    }
+
+    static class Chains {
+        @Chain({"b", "c"})
+        String[] first;
+        @Chain({"a", "d"})
+        String[] second;
+        @Variadic
+        String[] rest;
+    }
+
+    @Test
+    void testGeneratedParser() {
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("range", "from", int.class, "to", Pattern.compile("at(\\d+)"))
+                .addExpression("times", long.class, "times")
+                .addChain("remote", "git", "remote", "add")
+                .addWord("--verbose")
+                .addTagged("-o", File.class)
+                .addTagged("--client", boolean.class)
+                .addNamed("level", int.class)
+                .addNamed("mode", EvaluationOrder.class)
+                .addResolver(EvaluationOrder.class, (c, s) -> EvaluationOrder.valueOf(s))
+                .addIndexed("input")
+                .addIndexed("scale", double.class)
+                .setHasVariadicEnding(true)
+                .build();
+
+        for (String line : new String[]{
+                "git remote add from 1 to at10 -o out.db --client true level=3 mode=NAMED input.db 2.5 extra 7",
+                "7 times from 2 to at3 in 1.5 --verbose",
+                "level=4 from 1.5 --verbose -o a -o b",
+                "git remote git remote add add 3 3 times times",
+                "",
+        }) {
+            String[] args = line.isEmpty() ? new String[0] : line.split(" ");
+            ResultMap map = evaluator.evaluate(args);
+            Options options = ArgsEvalerTest_OptionsParser.parse(args);
+
+            assertArrayEquals((Object[]) map.get("range"), options.range, line);
+            assertArrayEquals((Object[]) map.get("times"), options.times, line);
+            assertArrayEquals((String[]) map.get("remote"), options.remote, line);
+            assertEquals(map.containsKey("--verbose"), options.verbose, line);
+            assertEquals(map.get("-o"), options.output, line);
+            assertEquals(map.getBoolean("--client", false), options.client, line);
+            assertEquals(map.getInt("level", -1), options.level, line);
+            assertEquals(map.get("mode"), options.order, line);
+            assertEquals(map.get("input"), options.input, line);
+            assertEquals(map.getDouble("scale", 0), options.scale, line);
+            assertArrayEquals(map.getVariadic(), options.rest, line);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> ArgsEvalerTest_OptionsParser.parse(args("-o")));
+
+        // After a match, the arguments on both sides of it can match too.
+        ResultMap map = new ArgsEvaler.ArgsEvalerBuilder()
+                .addChain("first", "b", "c")
+                .addChain("second", "a", "d")
+                .setHasVariadicEnding(true)
+                .build()
+                .evaluate(args("a", "b", "c", "d"));
+        Chains chains = ArgsEvalerTest_ChainsParser.parse(args("a", "b", "c", "d"));
+        assertArrayEquals((String[]) map.get("first"), chains.first);
+        assertArrayEquals((String[]) map.get("second"), chains.second);
+        assertArrayEquals(map.getVariadic(), chains.rest);
+        assertArrayEquals(args("a", "d"), chains.second);
+    }
+
+    static class Bound {
+        @Tagged("-o")
+        File output;
+        @Named
+        int level = -1;
+        long count;
+        @Chain("--verbose")
+        boolean verbose;
+        Object[] range;
+        @Variadic
+        String[] rest;
+        String untouched = "untouched";
+    }
+
+    static final class BoundByConstructor {
+        private final String input;
+        private final double scale;
+        private final boolean verbose;
+
+        BoundByConstructor(String input, double scale, boolean verbose) {
+            this.input = input;
+            this.scale = scale;
+            this.verbose = verbose;
+        }
+    }
+
+    @Test
+    void testBinding() {
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder()
+                .setLazyResolution(true)
+                .setHasVariadicEnding(true)
+                .addTagged("-o", File.class)
+                .addNamed("level", int.class)
+                .addChain("verbose", "--verbose")
+                .addExpression("range", "from", int.class)
+                .addIndexed("count", int.class)
+                .addIndexed("input")
+                .addIndexed("scale", double.class);
+        ArgsEvaler evaluator = builder.build();
+
+        ArgsBinding<Bound> binding = evaluator.bind(Bound.class);
+        assertSame(binding, evaluator.bind(Bound.class));
+
+        Bound bound = binding.evaluate(args("--verbose", "-o", "out.db", "level=3", "from", "4", "12", "in", "2.5", "extra"));
+        assertEquals(new File("out.db"), bound.output);
+        assertEquals(3, bound.level);
+        assertEquals(12L, bound.count); // int values are widened
+        assertTrue(bound.verbose);
+        assertArrayEquals(new Object[]{"from", 4}, bound.range);
+        assertArrayEquals(args("extra"), bound.rest);
+        assertEquals("untouched", bound.untouched);
+
+        bound = binding.evaluate("7");
+        assertEquals(-1, bound.level);
+        assertFalse(bound.verbose);
+        assertNull(bound.output);
+
+        // Without a constructor taking no parameters, the one taking all the fields is used.
+        BoundByConstructor byConstructor = evaluator.bind(BoundByConstructor.class).evaluate(args("1", "in", "2.5"));
+        assertEquals("in", byConstructor.input);
+        assertEquals(2.5, byConstructor.scale);
+        assertFalse(byConstructor.verbose);
+
+        assertThrows(NumberFormatException.class, () -> binding.evaluate(args("level=x")));
+
+        ArgsEvaler other = new ArgsEvaler.ArgsEvalerBuilder().addTagged("-o", int.class).build();
+        assertThrows(IllegalArgumentException.class, () -> other.bind(Bound.class)); // A File can't hold an int
+        assertThrows(IllegalArgumentException.class, () -> new ArgsEvaler.ArgsEvalerBuilder().build().bind(Bound.class));
+
+        // The class bound to doesn't keep the evaluators bound to it from being collected.
+        List<WeakReference<ArgsEvaler>> dropped = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ArgsEvaler temporary = builder.build();
+            temporary.bind(Bound.class);
+            dropped.add(new WeakReference<>(temporary));
+        }
+        for (int i = 0; i < 10 && dropped.stream().anyMatch(r -> r.get() != null); i++) System.gc();
+        assertTrue(dropped.stream().allMatch(r -> r.get() == null));
+    }
+
+    @Test
+    void testCommandRouter() throws InterruptedException {
+        ArgsEvaler add = new ArgsEvaler.ArgsEvalerBuilder().addIndexed("name").addIndexed("url").build();
+        ArgsEvaler remote = new ArgsEvaler.ArgsEvalerBuilder().setHasVariadicEnding(true).build();
+        ArgsEvaler fallback = new ArgsEvaler.ArgsEvalerBuilder().setHasVariadicEnding(true).build();
+
+        AtomicReference<String> handled = new AtomicReference<>();
+        CommandRouter router = new CommandRouter()
+                .register(add, map -> handled.set(map.getT("name")), "git", "remote", "add")
+                .register(remote, "git", "remote");
+
+        CommandRouter.Route route = router.route(args("git", "remote", "add", "origin", "https://x"));
+        assertArrayEquals(args("git", "remote", "add"), route.command());
+        assertSame(add, route.evaluator());
+        assertEquals("origin", route.result().get("name"));
+        assertEquals("https://x", route.result().get("url"));
+
+        // The longest registered command wins, it's the default of the subcommands under it.
+        route = router.route("git remote rename a b");
+        assertSame(remote, route.evaluator());
+        assertArrayEquals(args("rename", "a", "b"), route.result().getVariadic());
+
+        assertNull(router.route(args("git", "status")));
+        assertFalse(router.dispatch(args("ls")));
+        router.register(fallback);
+        assertSame(fallback, router.route(args("ls", "-l")).evaluator());
+
+        assertTrue(router.dispatch("git remote add upstream 'https://y'"));
+        assertEquals("upstream", handled.get());
+
+        assertTrue(router.remove("git", "remote"));
+        assertFalse(router.remove("git", "remote"));
+        assertSame(add, router.route(args("git", "remote", "add", "o")).evaluator());
+        assertSame(fallback, router.route(args("git", "remote", "rename")).evaluator());
+
+        // Commands can be registered and removed while routing.
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] routers = new Thread[4];
+        for (int i = 0; i < routers.length; i++)
+            (routers[i] = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        CommandRouter.Route r = router.route(args("git", "remote", "add", "o", "u"));
+                        assertSame(add, r.evaluator());
+                        assertEquals("u", r.result().get("url"));
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            })).start();
+        for (int i = 0; i < 2000; i++) router.register(remote, "cmd" + i, "sub");
+        for (int i = 0; i < 2000; i++) assertTrue(router.remove("cmd" + i, "sub"));
+        done.set(true);
+        for (Thread thread : routers) thread.join();
+        if (failure.get() != null) fail(failure.get());
+        assertSame(fallback, router.route(args("cmd5", "sub")).evaluator());
+
+        // Many commands under one node are published with one lookup table, on the next routing.
+        for (int i = 0; i < 50000; i++) router.register(i % 2 == 0 ? remote : add, "tool", "cmd" + i);
+        assertSame(remote, router.route(args("tool", "cmd49998", "x")).evaluator());
+        assertEquals("x", router.route(args("tool", "cmd49999", "x")).result().get("name"));
+        assertTrue(router.remove("tool", "cmd49998"));
+        assertSame(fallback, router.route(args("tool", "cmd49998")).evaluator());
+        assertSame(remote, router.route(args("tool", "cmd0")).evaluator());
+    }
+
+    @Test
+    void testEvaluationSession() {
+        AtomicInteger resolved = new AtomicInteger();
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("range", "from", BigInteger.class, "to", int.class)
+                .addChain("remote", "git", "remote", "add")
+                .addTagged("-t", BigInteger.class)
+                .addTagged("--tag")
+                .addNamed("level", int.class)
+                .addIndexed("input")
+                .setHasVariadicEnding(true)
+                .addResolver(BigInteger.class, (c, s) -> {
+                    resolved.incrementAndGet();
+                    return new BigInteger(s);
+                })
+                .build();
+
+        // Typing a line key by key gives the same results as evaluating it every time.
+        EvaluationSession session = evaluator.session();
+        String line = "-t 1 from 2 to 3 git remote add level=4 in put";
+        for (int end = 0; end <= line.length(); end++) {
+            String typed = line.substring(0, end);
+            ResultMap expected;
+            try {
+                expected = evaluator.evaluate(typed);
+            } catch (IllegalArgumentException e) { // Like a tag without its value yet
+                assertThrows(e.getClass(), () -> session.update(typed));
+                continue;
+            }
+            ResultMap map = session.update(typed);
+            assertEquals(expected.keySet(), map.keySet(), typed);
+            for (String key : expected.keySet())
+                assertArrayEquals(new Object[]{expected.get(key)}, new Object[]{map.get(key)}, typed);
+        }
+
+        // The start of the line is matched once, editing the end doesn't resolve it again.
+        resolved.set(0);
+        session.update("-t 1 from 2 to 3 git remote add level=4 input");
+        session.update("-t 1 from 2 to 3 git remote add level=5 input");
+        assertEquals(0, resolved.get());
+        assertEquals(5, session.result().getInt("level", -1));
+        session.update("-t 7 from 2 to 3 git remote add level=5 input");
+        assertEquals(BigInteger.valueOf(7), session.result().get("-t"));
+
+        assertThrows(NumberFormatException.class, () -> session.update("-t x"));
+        assertNull(session.result());
+        assertEquals(BigInteger.ONE, session.update("-t 1").get("-t"));
+
+        session.update("git remote ");
+        assertEquals(Arrays.asList("--tag", "-t", "add", "from", "git", "level="), session.complete());
+        session.update("git remote a");
+        assertEquals(Arrays.asList("add"), session.complete());
+        session.update("-");
+        assertEquals(Arrays.asList("--tag", "-t"), session.complete());
+        session.update("from 1 ");
+        assertEquals(Arrays.asList("--tag", "-t", "from", "git", "level=", "to"), session.complete());
+        session.update("l");
+        assertEquals(Arrays.asList("level="), session.complete());
+        // The line is still completed when it can't be evaluated yet.
+        assertThrows(IllegalArgumentException.class, () -> session.update("--tag "));
+        assertEquals(Collections.emptyList(), session.complete());
+
+        // A chain matched again after an edit may step back to consume arguments before the edit.
+        ArgsEvaler chains = new ArgsEvaler.ArgsEvalerBuilder()
+                .addChain("M", "m")
+                .addChain("C1", "y", "e")
+                .addChain("C2", "k=v", "f")
+                .addNamed("k")
+                .setHasVariadicEnding(true)
+                .build();
+        EvaluationSession chained = chains.session();
+        chained.update("m k=v y q f z");
+        ResultMap map = chained.update("m k=v y e f z");
+        ResultMap expected = chains.evaluate("m k=v y e f z");
+        assertEquals(expected.keySet(), map.keySet());
+        assertArrayEquals(expected.getVariadic(), map.getVariadic());
+    }
+
+    @Test
+    void testCollectingErrors() {
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("range", "from", int.class, "to", int.class)
+                .addExpression("id", pattern("<(\\w+)>", Integer.class))
+                .addTagged("-t", int.class)
+                .addNamed("level", double.class)
+                .addIndexed("input", BigInteger.class)
+                .addIndexed("output")
+                .setRequireAllIndexedArgsToBeFulfilled(true)
+                .setCollectingErrors(true)
+                .build();
+
+        ResultMap map = evaluator.evaluate(args("from", "1", "to", "x", "<y>", "level=fast", "12", "-t"));
+        assertTrue(map.hasErrors());
+        assertEquals(Arrays.asList(
+                new ArgsError(ArgsError.Kind.INVALID_VALUE, "range", 3, "x"),
+                new ArgsError(ArgsError.Kind.INVALID_VALUE, "id", 4, "y"),
+                new ArgsError(ArgsError.Kind.MISSING_VALUE, "-t", 7, null),
+                new ArgsError(ArgsError.Kind.INVALID_VALUE, "level", 5, "fast"),
+                new ArgsError(ArgsError.Kind.TOO_FEW_INDEXED, "output", 8, null)
+        ), map.errors());
+        assertFalse(map.containsKey("range"));
+        assertEquals(BigInteger.valueOf(12), map.get("input"));
+
+        // Reusing the map forgets the errors.
+        evaluator.evaluate(args("from", "1", "to", "2", "12", "out"), map);
+        assertFalse(map.hasErrors());
+        assertArrayEquals(new Object[]{"from", 1, "to", 2}, (Object[]) map.get("range"));
+
+        map = evaluator.evaluate("-t 3 12 'out");
+        assertEquals(Collections.singletonList(new ArgsError(ArgsError.Kind.UNTERMINATED_QUOTE, null, 3, "out")), map.errors());
+        assertEquals(3, map.getInt("-t", -1));
+        assertEquals("out", map.get("output"));
+
+        // Without collecting, the same arguments throw.
+        ArgsEvaler throwing = new ArgsEvaler.ArgsEvalerBuilder().addTagged("-t", int.class).build();
+        assertThrows(NumberFormatException.class, () -> throwing.evaluate(args("-t", "x")));
+        assertThrows(IllegalArgumentException.class, () -> throwing.evaluate(args("-t")));
+        assertThrows(IllegalArgumentException.class, () -> throwing.evaluate("-t \"3"));
+
+        // The default resolvers reject exactly what they can't parse.
+        ObjectResolver ints = ObjectResolver.Default.RESOLVERS.get(int.class);
+        for (String value : args("0", "-2147483648", "+2147483647", "2147483648", "-", "", "1_0", "\u0661"))
+            assertEquals(isParsed(() -> Integer.parseInt(value)), ints.accepts(value), value);
+        ObjectResolver doubles = ObjectResolver.Default.RESOLVERS.get(double.class);
+        for (String value : args("1", " -1.5e3d ", ".5", "5.", "1e", ".", "NaN", "-Infinity", "0x1p3", "1,5", "e5"))
+            assertEquals(isParsed(() -> Double.parseDouble(value)), doubles.accepts(value), value);
+        ObjectResolver decimals = ObjectResolver.Default.RESOLVERS.get(BigDecimal.class);
+        for (String value : args("1", "-1.5E+3", ".5", "5.", "1e", ".", "1.2.3", "+", "1e-", "1d", " 1", "NaN", "\u0661.\u0662"))
+            assertEquals(isParsed(() -> new BigDecimal(value)), decimals.accepts(value), value);
+
+        // A pattern is checked by compiling it, and the one compiled by the check is given out.
+        map = new ArgsEvaler.ArgsEvalerBuilder()
+                .addNamed("re", Pattern.class)
+                .addNamed("amount", BigDecimal.class)
+                .setCollectingErrors(true)
+                .build()
+                .evaluate(args("re=a(b", "amount=1,5"));
+        assertEquals(Arrays.asList(
+                new ArgsError(ArgsError.Kind.INVALID_VALUE, "re", 0, "a(b"),
+                new ArgsError(ArgsError.Kind.INVALID_VALUE, "amount", 1, "1,5")
+        ), map.errors());
+        ObjectResolver patterns = ObjectResolver.Default.RESOLVERS.get(Pattern.class);
+        assertTrue(patterns.accepts("a(b)"));
+        assertSame(patterns.apply(Pattern.class, "a(b)"), patterns.apply(Pattern.class, "a(b)"));
+    }
+
+    @Test
+    void testParsingSlices() {
+        List<String> regions = new ArrayList<>();
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addNamed("level", double.class)
+                .addNamed("count", int.class)
+                .addTagged("-b", byte.class)
+                .addTagged("-f", float.class)
+                .addIndexed("flag", boolean.class)
+                .addIndexed("word", StringBuilder.class)
+                .addResolver(StringBuilder.class, (ObjectResolver.CharSequenceResolver) (c, s, start, end) -> {
+                    regions.add(start + ".." + end);
+                    return new StringBuilder().append(s, start, end);
+                })
+                .build();
+
+        ResultMap map = evaluator.evaluate("level=-1.25e2 count=+42 -b -128 -f 0.1 TRUE word");
+        assertEquals(-125.0, map.getDouble("level", 0));
+        assertEquals(42, map.getInt("count", 0));
+        assertEquals((byte) -128, map.get("-b"));
+        assertEquals(0.1f, map.get("-f"));
+        assertTrue(map.getBoolean("flag", false));
+        assertEquals("word", map.get("word").toString());
+        assertEquals(Collections.singletonList("44..48"), regions); // The region of the line
+        assertThrows(NumberFormatException.class, () -> evaluator.evaluate("count=2147483648"));
+
+        // The numbers parsed from slices are exactly the ones the wrapper classes parse.
+        Random random = new Random(20);
+        for (int i = 0; i < 20000; i++) {
+            String number;
+            switch (i % 4) {
+                case 0:
+                    number = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+                    break;
+                case 1:
+                    number = random.nextInt(100000) + "." + random.nextInt(1000) + (random.nextBoolean() ? "e" + (random.nextInt(50) - 25) : "");
+                    break;
+                case 2:
+                    number = Float.toString(random.nextFloat() * random.nextInt(1000));
+                    break;
+                default:
+                    number = Long.toString(random.nextLong() >> random.nextInt(64));
+            }
+            if (random.nextBoolean() && number.charAt(0) != '-') number = "-" + number;
+            String buffer = "x=" + number + " ";
+            int end = buffer.length() - 1;
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(number)), Double.doubleToLongBits(Numbers.parseDouble(buffer, 2, end)), number);
+            assertEquals(Float.floatToIntBits(Float.parseFloat(number)), Float.floatToIntBits(Numbers.parseFloat(buffer, 2, end)), number);
+            assertTrue(Numbers.isFloating(buffer, 2, end), number);
+            if (i % 4 == 3)
+                assertEquals(Long.parseLong(number), Numbers.parseInteger(buffer, 2, end, Long.MIN_VALUE, Long.MAX_VALUE), number);
+        }
+    }
+
+    @Test
+    void testPatternFilter() {
+        PatternFilter id = PatternFilter.of(Pattern.compile("<!(\\d{10})>"), 0);
+        assertTrue(id.admits("<!2345678901>", 0, 13));
+        for (String token : args("kub", "<!234567890>", "<!23456789012>", "<?2345678901>", "<!2345678901)", "<!a345678901>"))
+            assertFalse(id.admits(token, 0, token.length()), token);
+
+        // A filter never rejects what its pattern matches.
+        Random random = new Random(21);
+        String alphabet = "abxyz<>!.-_ 019\t\u00e9";
+        for (String regex : args("<(\\w+)>", "(ab|ac)d*", "foo|bar", ".*\\.file", "x{2,3}y?", "(?:ab)+c", "\\Qa.b\\E+",
+                "[^a]b", "a?b?z?", "(?<n>x+)y", "\\s*z", "[\\w-]{2}", "(a|)b", "\\bx\\b", "\\p{L}+", "(?i)ab", "x(?=y)y", "(a)\\1", "\u00e9[a-c]")) {
+            Pattern pattern = Pattern.compile(regex);
+            PatternFilter filter = PatternFilter.of(pattern, 0);
+            for (int i = 0; i < 20000; i++) {
+                StringBuilder token = new StringBuilder("=");
+                for (int length = random.nextInt(8); length > 0; length--)
+                    token.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                if (pattern.matcher(token.substring(1)).matches())
+                    assertTrue(filter.admits(token, 1, token.length()), regex + " " + token);
+            }
+        }
+
+        // The matchers kept with a map are reset for the next evaluator's patterns.
+        ArgsEvaler first = new ArgsEvaler.ArgsEvalerBuilder().addExpression("id", pattern("<!(\\d{2})>", int.class)).build();
+        ArgsEvaler second = new ArgsEvaler.ArgsEvalerBuilder().addExpression("id", pattern("<(\\w+)>", String.class)).build();
+        ResultMap map = first.evaluate(args("<!12>"));
+        assertArrayEquals(new Object[]{12}, (Object[]) map.get("id"));
+        assertArrayEquals(new Object[]{"ab"}, (Object[]) second.evaluate(args("<!12>", "<ab>"), map).get("id"));
+        assertArrayEquals(new Object[]{34}, (Object[]) first.evaluate(args("x", "<!34>"), map).get("id"));
+    }
+
+    @Test
+    void testScanningKeepsPriorities() {
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("e", "from", int.class)
+                .addChain("c", "git", "push")
+                .addTagged("-m")
+                .addTagged("git")
+                .addNamed("k")
+                .setHasVariadicEnding(true);
+
+        // The tag takes the named argument as its value only if it's evaluated first.
+        ResultMap map = builder.build().evaluate(args("x", "-m", "k=1", "k=2", "git", "push", "from", "3"));
+        assertEquals("k=1", map.get("-m"));
+        assertEquals("2", map.get("k"));
+        assertArrayEquals(new String[]{"git", "push"}, (String[]) map.get("c"));
+        assertArrayEquals(new Object[]{"from", 3}, (Object[]) map.get("e"));
+
+        map = builder.setEvaluationOrder(EvaluationOrder.NAMED, EvaluationOrder.TAGGED, EvaluationOrder.NAMED, EvaluationOrder.CHAINED)
+                .setMixingEachTypeIsAllowed(true)
+                .build().evaluate(args("x", "-m", "k=1", "k=2", "git", "push", "from", "3"));
+        assertEquals("2", map.get("k"));
+        assertEquals("git", map.get("-m")); // So the chain isn't found
+        assertArrayEquals(new String[]{"x", "push", "from", "3"}, map.getVariadic());
+
+        // Without mixing, a phase stops at the first argument it doesn't match.
+        map = builder.setEvaluationOrder(EvaluationOrder.TAGGED, EvaluationOrder.NAMED, EvaluationOrder.EXPRESSION)
+                .build().evaluate(args("-m", "a", "k=1", "from", "2", "-m", "b"));
+        assertEquals("a", map.get("-m"));
+        assertEquals("1", map.get("k"));
+        assertArrayEquals(new Object[]{"from", 2}, (Object[]) map.get("e"));
+        assertArrayEquals(new String[]{"-m", "b"}, map.getVariadic());
+    }
+
+    @Test
+    void testTokenBuffer() {
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addIndexed("mode", CharSequence.class)
+                .addNamed("count", int.class)
+                .addTagged("-o", CharSequence.class)
+                .setHasVariadicEnding(true)
+                .build();
+
+        TokenBuffer buffer = new TokenBuffer(4, 16);
+        buffer.add("sync").add("count=3").add("--", 0, 2).add("-o").add(new StringBuilder("out"));
+        for (int i = 0; i < 1000; i++) buffer.add("file" + i);
+        assertEquals(1005, buffer.size());
+        assertEquals("--", buffer.string(2));
+
+        ResultMap map = evaluator.evaluate(buffer);
+        assertEquals("sync", map.get("mode").toString());
+        assertEquals(3, map.getInt("count", 0));
+        assertEquals("out", map.get("-o").toString());
+        assertFalse(map.get("-o") instanceof String); // A view of the buffer
+
+        List<CharSequence> variadic = map.getVariadicTokens();
+        assertTrue(variadic instanceof TokenBuffer.View);
+        assertEquals(1001, variadic.size());
+        assertEquals("--", variadic.get(0).toString());
+        assertEquals("file999", variadic.get(1000).toString());
+        assertEquals("ile9", variadic.get(10).subSequence(1, 5).toString());
+        assertEquals(variadic.size(), map.getVariadic().length);
+        assertEquals("file0", map.getVariadic()[1]);
+
+        // Adding arguments keeps the views valid, even when the buffer grows.
+        for (int i = 0; i < 10000; i++) buffer.add("more");
+        assertEquals("file999", variadic.get(1000).toString());
+
+        // The same results as the Strings give, and views only of buffers.
+        String[] strings = new String[buffer.size()];
+        for (int i = 0; i < strings.length; i++) strings[i] = buffer.string(i);
+        ResultMap fromStrings = evaluator.evaluate(strings);
+        assertEquals("out", fromStrings.get("-o"));
+        assertEquals(strings.length - 4, fromStrings.getVariadicTokens().size());
+        assertArrayEquals(fromStrings.getVariadic(), evaluator.evaluate(buffer, map).getVariadic());
+
+        // The unconsumed arguments aren't adjacent when mixing.
+        buffer.clear();
+        buffer.add("a").add("-o").add("x").add("b");
+        map = evaluator.evaluate(buffer, map);
+        assertEquals("x", map.get("-o").toString());
+        assertEquals(Collections.singletonList("b"), Collections.singletonList(map.getVariadicTokens().get(0).toString()));
+        assertArrayEquals(new String[]{"b"}, map.getVariadic());
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(4));
+    }
+
+    @Test
+    void testArgFiles() throws IOException {
+        Path dir = Files.createTempDirectory("argfiles");
+        Path options = write(dir.resolve("options"), "# The output\n-o \"out dir\"\n'a b' @" + dir.resolve("names") + "\n@@literal x\\y\n");
+        Path names = write(dir.resolve("names"), "k=1 \"tab\\there\" \"con\\\n   tinued\" \"\u00e9\"");
+        Path cycle = write(dir.resolve("cycle"), "@" + dir.resolve("back"));
+        write(dir.resolve("back"), "x @" + cycle);
+
+        for (long threshold : new long[]{0, Long.MAX_VALUE}) {
+            ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                    .addTagged("-o")
+                    .addNamed("k", int.class)
+                    .setHasVariadicEnding(true)
+                    .setArgFilePrefix("@")
+                    .setArgFileMappingThreshold(threshold)
+                    .build();
+
+            ResultMap map = evaluator.evaluate(args("first", "@" + options, "@@last"));
+            assertEquals("out dir", map.get("-o"));
+            assertEquals(1, map.getInt("k", 0));
+            assertArrayEquals(new String[]{"first", "a b", "tab\there", "continued", "\u00e9", "@literal", "x\\y", "@last"}, map.getVariadic());
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(args("@" + cycle)));
+            assertTrue(e.getMessage().contains("names itself"));
+            assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(args("@" + dir.resolve("missing"))));
+        }
+
+        // Without the prefix, the arguments are taken as they are.
+        ResultMap map = new ArgsEvaler.ArgsEvalerBuilder().setHasVariadicEnding(true).build().evaluate(args("@" + options));
+        assertArrayEquals(new String[]{"@" + options}, map.getVariadic());
+
+        for (String file : args("options", "names", "cycle", "back")) Files.delete(dir.resolve(file));
+        Files.delete(dir);
+    }
+
+    private static Path write(Path path, String content) throws IOException {
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testScanningStreams() {
+        ArgsEvaler evaluator = new ArgsEvaler.ArgsEvalerBuilder()
+                .addExpression("timeout", "timeout", int.class)
+                .addExpression("retry", "retry", Pattern.compile("#(\\d+)"), "of", int.class)
+                .addChain("failure", "request", "failed")
+                .build();
+
+        List<String> matches = new ArrayList<>();
+        long count = evaluator.scan(Arrays.asList("request", "timeout", "30", "request", "failed", "retry", "#2", "of", "5",
+                        "noise", "timeout", "40").spliterator(),
+                (name, position, values) -> matches.add(name + "@" + position + Arrays.toString(values)));
+        assertEquals(4, count);
+        assertEquals(Arrays.asList("timeout@1[timeout, 30]", "failure@3[request, failed]",
+                "retry@5[retry, 2, of, 5]", "timeout@10[timeout, 40]"), matches);
+
+        // A stream of any length, only the window of the longest expression is held.
+        AtomicLong sum = new AtomicLong();
+        Iterator<String> stream = new Iterator<String>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < 3_000_000;
+            }
+
+            @Override
+            public String next() {
+                int n = i++;
+                return n % 3 == 0 ? "timeout" : n % 3 == 1 ? Integer.toString(n) : "noise";
+            }
+        };
+        assertEquals(1_000_000, evaluator.scan(stream, (name, position, values) -> sum.addAndGet((int) values[1])));
+        assertEquals(1_000_000L * 1_500_000 - 500_000, sum.get()); // The sum of 1, 4, 7...
+
+        assertEquals(0, evaluator.scan(Collections.singletonList("timeout").iterator(), (name, position, values) -> matches.add(name)));
+        assertThrows(NumberFormatException.class, () -> evaluator.scan(Arrays.asList("retry", "#1", "of", "many").iterator(), (name, position, values) -> {
+        }));
+    }
+
+    @Test
+    void testSteppingBackAfterMatches() {
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder()
+                .addChain("c", "a", "b")
+                .addExpression("e", "p", "q")
+                .addIndexed("i0")
+                .addIndexed("i1")
+                .setHasVariadicEnding(true);
+        ArgsEvaler evaluator = builder.build();
+
+        // Removing the inner match makes the arguments around it adjacent, and they match too.
+        ResultMap map = evaluator.evaluate(args("a", "a", "b", "b"));
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) map.get("c"));
+        assertNull(map.get("i0"));
+        assertNull(map.get("i1"));
+
+        map = evaluator.evaluate(args("p", "p", "q", "q", "x"));
+        assertArrayEquals(new Object[]{"p", "q"}, (Object[]) map.get("e"));
+        assertEquals("x", map.get("i0"));
+
+        // A match at the start has nothing to step back to.
+        map = evaluator.evaluate(args("a", "b", "c"));
+        assertEquals("c", map.get("i0"));
+
+        // The same with the phases visiting only their candidates, and in a session.
+        assertNull(evaluator.evaluate(args("x", "a", "a", "a", "b", "b", "b")).get("i1"));
+        assertEquals("x", evaluator.evaluate(args("x", "a", "a", "a", "b", "b", "b")).get("i0"));
+        EvaluationSession session = evaluator.session();
+        session.update("a a b");
+        map = session.update("a a b b");
+        assertNull(map.get("i0"));
+        assertNull(builder.setMixingEachTypeIsAllowed(false).build().evaluate(args("a", "a", "b", "b")).get("c"));
+    }
+
+    @Test
+    void testRoutingLikeEvaluating() throws IOException {
+        Path options = write(Files.createTempDirectory("routing").resolve("options"), "-t 3 rest");
+        ArgsEvaler.ArgsEvalerBuilder builder = new ArgsEvaler.ArgsEvalerBuilder()
+                .addTagged("-t", int.class)
+                .setHasVariadicEnding(true)
+                .setArgFilePrefix("@");
+        ArgsEvaler evaluator = builder.build();
+        CommandRouter router = new CommandRouter().register(evaluator, "run");
+
+        // The argument files after the command are expanded, the command itself is matched as given.
+        ResultMap map = router.route(args("run", "@" + options, "x")).result();
+        assertEquals(3, map.getInt("-t", -1));
+        assertArrayEquals(args("rest", "x"), map.getVariadic());
+        assertNull(router.route(args("@" + options)));
+
+        // A quote which isn't closed throws, unless the evaluator collects the errors.
+        assertThrows(IllegalArgumentException.class, () -> router.route("run -t 3 'x"));
+        router.register(builder.setCollectingErrors(true).build(), "run");
+        map = router.route("run -t 3 'x").result();
+        assertEquals(Collections.singletonList(new ArgsError(ArgsError.Kind.UNTERMINATED_QUOTE, null, 2, "x")), map.errors());
+        assertEquals(3, map.getInt("-t", -1));
+        assertArrayEquals(args("x"), map.getVariadic());
+    }
+
+    private static boolean isParsed(Runnable parse) {
+        try {
+            parse.run();
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     private static String[] args(String... args) {
         return args;
     }